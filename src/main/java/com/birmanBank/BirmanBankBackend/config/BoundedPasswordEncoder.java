@@ -0,0 +1,36 @@
+package com.birmanBank.BirmanBankBackend.config;
+
+import com.birmanBank.BirmanBankBackend.services.PasswordHashingService;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/*
+ * a PasswordEncoder that hands every encode and matches call to the bounded hashing pool
+ * everything that hashes passwords (login, registration, admin creation) goes through it without any change
+ * upgradeEncoding only reads the stored hash, so it stays on the caller's thread
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordEncoder delegate;
+    private final PasswordHashingService passwordHashingService;
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, PasswordHashingService passwordHashingService) {
+        this.delegate = delegate;
+        this.passwordHashingService = passwordHashingService;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return passwordHashingService.hash(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return passwordHashingService.verify(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+}
@@ -0,0 +1,35 @@
+package com.birmanBank.BirmanBankBackend.config;
+
+import org.bson.types.Decimal128;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.WritingConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/*
+ * stores every BigDecimal as BSON Decimal128 instead of Spring Data's default string
+ * this covers documents, query values and update values, so money can be compared, sorted, $inc'd and aggregated
+ * on the server - Decimal128 is read back as BigDecimal by the built-in converters
+ * documents written before this still hold strings until the Decimal128 migration has converted them
+ */
+@Configuration
+public class MongoConversionConfig {
+
+    @Bean
+    public MongoCustomConversions mongoCustomConversions() {
+        return new MongoCustomConversions(List.of(new BigDecimalToDecimal128Converter()));
+    }
+
+    @WritingConverter
+    static class BigDecimalToDecimal128Converter implements Converter<BigDecimal, Decimal128> {
+
+        @Override
+        public Decimal128 convert(BigDecimal source) {
+            return new Decimal128(source);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.birmanBank.BirmanBankBackend.config;
+
+import com.birmanBank.BirmanBankBackend.models.Account;
+import com.birmanBank.BirmanBankBackend.models.InboxMessage;
+import com.birmanBank.BirmanBankBackend.models.Loan;
+import com.birmanBank.BirmanBankBackend.models.OutboxMessage;
+import com.birmanBank.BirmanBankBackend.models.Transaction;
+import com.birmanBank.BirmanBankBackend.utils.IdGenerator;
+
+import org.springframework.data.mongodb.core.mapping.event.BeforeConvertCallback;
+import org.springframework.stereotype.Component;
+
+/*
+ * assigns time ordered IDs from the IdGenerator to new documents before they are written
+ * covers every write path (save, insert, insertMany and bulk inserts), so services don't have to set IDs themselves
+ * documents that already have an ID keep it
+ */
+@Component
+public class MongoIdCallback implements BeforeConvertCallback<Object> {
+
+    private final IdGenerator idGenerator;
+
+    public MongoIdCallback(IdGenerator idGenerator) {
+        this.idGenerator = idGenerator;
+    }
+
+    @Override
+    public Object onBeforeConvert(Object entity, String collection) {
+        if (entity instanceof Transaction transaction && transaction.getTransactionId() == null) {
+            transaction.setTransactionId(idGenerator.nextIdString());
+        } else if (entity instanceof Account account && account.getAccountId() == null) {
+            account.setAccountId(idGenerator.nextIdString());
+        } else if (entity instanceof Loan loan && loan.getLoanId() == null) {
+            loan.setLoanId(idGenerator.nextIdString());
+        } else if (entity instanceof InboxMessage message && message.getMessageId() == null) {
+            message.setMessageId(idGenerator.nextIdString());
+        } else if (entity instanceof OutboxMessage message && message.getOutboxId() == null) {
+            message.setOutboxId(idGenerator.nextIdString());
+        }
+        return entity;
+    }
+}
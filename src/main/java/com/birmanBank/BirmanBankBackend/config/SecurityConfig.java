@@ -2,6 +2,9 @@ package com.birmanBank.BirmanBankBackend.config;
 
 import com.birmanBank.BirmanBankBackend.filters.JwtRequestFilter;
 import com.birmanBank.BirmanBankBackend.services.AuthenticationService;
+import com.birmanBank.BirmanBankBackend.services.PasswordHashingService;
+import jakarta.servlet.DispatcherType;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -27,11 +30,17 @@ public class SecurityConfig {
 
     private final AuthenticationService userDetailsService;
     private final JwtRequestFilter jwtRequestFilter;
+    private final PasswordHashingService passwordHashingService;
+    private final int bcryptStrength;
 
     public SecurityConfig(JwtRequestFilter jwtRequestFilter,
-            AuthenticationService userDetailsService) {
+            AuthenticationService userDetailsService,
+            PasswordHashingService passwordHashingService,
+            @Value("${bank.auth.bcrypt-strength:10}") int bcryptStrength) {
         this.userDetailsService = userDetailsService;
         this.jwtRequestFilter = jwtRequestFilter;
+        this.passwordHashingService = passwordHashingService;
+        this.bcryptStrength = bcryptStrength;
     }
 
     // config AuthenticationManagerBuilder
@@ -44,6 +53,8 @@ public class SecurityConfig {
                 // enable CORS
                 .cors(withDefaults())
                 .authorizeHttpRequests(authz -> authz // defines authorization rules
+                        // streamed responses finish on an async dispatch, the request was already authorized
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers("/api/auth/**").permitAll() // allow login and register endpoints
                         .requestMatchers("/api/clients/inbox").authenticated() // Allow inbox access for all authenticated users
                         .requestMatchers("/api/accounts/**", "/api/transfer/**", "/api/deposit/**", "/api/withdraw/**", "/api/settings/**").hasAnyAuthority("ROLE_ACTIVATED","ROLE_ADMIN" ) // require activation or admin role
@@ -63,10 +74,11 @@ public class SecurityConfig {
         return authConfig.getAuthenticationManager();
     }
 
-    // bean for encoding passwords using BCrypt
+    // bean for encoding passwords using BCrypt on the bounded hashing pool
+    // hashes with a lower cost than the configured strength are rehashed on the next successful login
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(bcryptStrength), passwordHashingService);
     }
 
     // configure AuthenticationManagerBuilder - used to set up authentication
@@ -1,24 +1,34 @@
 package com.birmanBank.BirmanBankBackend.controllers;
 
+import com.birmanBank.BirmanBankBackend.dto.CursorPage;
+import com.birmanBank.BirmanBankBackend.dto.DailyBalanceReport;
 import com.birmanBank.BirmanBankBackend.models.Account;
 import com.birmanBank.BirmanBankBackend.models.Transaction;
 import com.birmanBank.BirmanBankBackend.models.Client;
 import com.birmanBank.BirmanBankBackend.services.AuthenticationService;
+import com.birmanBank.BirmanBankBackend.services.ClientServices.AccountDesignationService;
 import com.birmanBank.BirmanBankBackend.services.ClientServices.AccountService;
+import com.birmanBank.BirmanBankBackend.services.ClientServices.DailyBalanceService;
+import com.birmanBank.BirmanBankBackend.services.ClientServices.TransactionExportService;
 import com.birmanBank.BirmanBankBackend.services.ClientServices.TransactionService;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.hateoas.EntityModel;
 import org.springframework.hateoas.PagedModel;
 import org.springframework.data.web.PagedResourcesAssembler;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
@@ -35,12 +45,19 @@ public class AccountController {
     private final AccountService accountService;
     private final TransactionService transactionService;
     private final AuthenticationService authenticationService;
+    private final TransactionExportService transactionExportService;
+    private final DailyBalanceService dailyBalanceService;
+    private final AccountDesignationService accountDesignationService;
 
     public AccountController(AccountService accountService, TransactionService transactionService,
-            AuthenticationService authenticationService) {
+            AuthenticationService authenticationService, TransactionExportService transactionExportService,
+            DailyBalanceService dailyBalanceService, AccountDesignationService accountDesignationService) {
         this.accountService = accountService;
         this.transactionService = transactionService;
         this.authenticationService = authenticationService;
+        this.transactionExportService = transactionExportService;
+        this.dailyBalanceService = dailyBalanceService;
+        this.accountDesignationService = accountDesignationService;
     }
     // ---------------------------------------------------------------//
 
@@ -90,6 +107,64 @@ public class AccountController {
         return ResponseEntity.ok(pagedModel);
     }
 
+    // endpoint to page through the transactions of a specific account with a cursor
+    // pass the nextCursor of a page to get the next one, the total is only counted when includeTotal is set
+    @GetMapping("/{accountId}/transactions")
+    public ResponseEntity<CursorPage<Transaction>> getAccountTransactions(
+            @PathVariable String accountId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal,
+            @AuthenticationPrincipal UserDetails userDetails) {
+
+        String cardNumber = authenticationService.validateAuthenticatedUser(userDetails); // validate the authenticated user
+        authenticationService.verifyAccountOwnership(accountId, cardNumber); // verify ownership of the account
+
+        return ResponseEntity.ok(transactionService.getTransactionsByAccountId(accountId, cursor, size, includeTotal));
+    }
+
+    // endpoint to export the transactions of a specific account as CSV or NDJSON
+    // the file is streamed from the database as it is written, so exports of any size use constant memory
+    @GetMapping("/{accountId}/export")
+    public ResponseEntity<StreamingResponseBody> exportTransactions(
+            @PathVariable String accountId,
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @AuthenticationPrincipal UserDetails userDetails) {
+
+        String cardNumber = authenticationService.validateAuthenticatedUser(userDetails); // validate the authenticated user
+        authenticationService.verifyAccountOwnership(accountId, cardNumber); // verify ownership of the account
+
+        // without a range the whole history is exported
+        LocalDateTime startDate = from != null ? from : LocalDateTime.of(1970, 1, 1, 0, 0);
+        LocalDateTime endDate = to != null ? to : LocalDateTime.now();
+
+        TransactionExportService.Format exportFormat = TransactionExportService.Format.of(format);
+        StreamingResponseBody body = transactionExportService.export(accountId, startDate, endDate, exportFormat);
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_TYPE, exportFormat.getContentType())
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"transactions-" + accountId + "." + exportFormat.getExtension() + "\"")
+                .body(body);
+    }
+
+    // endpoint to get the daily balances of a specific account with opening, closing and average balance of the range
+    // served from the daily rollup, so it reads one document per active day no matter how many transactions there are
+    @GetMapping("/{accountId}/daily-balances")
+    public ResponseEntity<DailyBalanceReport> getDailyBalances(
+            @PathVariable String accountId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @AuthenticationPrincipal UserDetails userDetails) {
+
+        String cardNumber = authenticationService.validateAuthenticatedUser(userDetails); // validate the authenticated user
+        authenticationService.verifyAccountOwnership(accountId, cardNumber); // verify ownership of the account
+
+        return ResponseEntity.ok(dailyBalanceService.getReport(accountId, from, to));
+    }
+
     // endpoint to update the name of a specific account
     @PutMapping("/{accountId}/update-name")
     public ResponseEntity<Account> updateAccountName(
@@ -107,6 +182,18 @@ public class AccountController {
         return ResponseEntity.ok(updatedAccount);
     }
 
+    // endpoint to make a specific account the one that receives transfers and loan disbursements
+    @PutMapping("/{accountId}/default-deposit")
+    public ResponseEntity<Account> setDefaultDepositAccount(
+            @PathVariable String accountId,
+            @AuthenticationPrincipal UserDetails userDetails) {
+
+        String cardNumber = authenticationService.validateAuthenticatedUser(userDetails); // validate the authenticated user
+        Client client = authenticationService.getClientByUserCardNumber(cardNumber); // Fetch the Client object
+
+        return ResponseEntity.ok(accountDesignationService.setDefaultDepositAccount(client.getClientId(), accountId));
+    }
+
     // endpoint to create a new account for the authenticated user
     @PostMapping("/create")
     public ResponseEntity<Account> createAccount(
@@ -1,26 +1,36 @@
 package com.birmanBank.BirmanBankBackend.controllers;
 
+import com.birmanBank.BirmanBankBackend.dto.CursorPage;
 import com.birmanBank.BirmanBankBackend.models.Account;
 import com.birmanBank.BirmanBankBackend.models.Client;
+import com.birmanBank.BirmanBankBackend.models.MigrationProgress;
 import com.birmanBank.BirmanBankBackend.models.Transaction;
 import com.birmanBank.BirmanBankBackend.models.User;
 import com.birmanBank.BirmanBankBackend.models.InboxMessage;
 
 import com.birmanBank.BirmanBankBackend.services.ClientServices.AccountService;
 import com.birmanBank.BirmanBankBackend.services.ClientServices.ClientService;
+import com.birmanBank.BirmanBankBackend.services.ClientServices.AccountDesignationService;
+import com.birmanBank.BirmanBankBackend.services.ClientServices.DailyBalanceService;
 import com.birmanBank.BirmanBankBackend.services.ClientServices.TransactionService;
+import com.birmanBank.BirmanBankBackend.services.AdminListingService;
 import com.birmanBank.BirmanBankBackend.services.UserService;
+import com.birmanBank.BirmanBankBackend.services.Decimal128MigrationService;
 import com.birmanBank.BirmanBankBackend.services.MessageService;
 
 import com.birmanBank.BirmanBankBackend.repositories.UserRepository;
 
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
-import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -43,10 +53,16 @@ public class AdminController {
     private final PasswordEncoder passwordEncoder;
     private final UserRepository userRepository;
     private final MessageService messageService;
+    private final DailyBalanceService dailyBalanceService;
+    private final AccountDesignationService accountDesignationService;
+    private final Decimal128MigrationService decimal128MigrationService;
+    private final AdminListingService adminListingService;
 
     public AdminController(ClientService clientService, AccountService accountService,
             TransactionService transactionService, UserService userService, PasswordEncoder passwordEncoder,
-            UserRepository userRepository, MessageService messageService) {
+            UserRepository userRepository, MessageService messageService, DailyBalanceService dailyBalanceService,
+            AccountDesignationService accountDesignationService,
+            Decimal128MigrationService decimal128MigrationService, AdminListingService adminListingService) {
         this.clientService = clientService;
         this.accountService = accountService;
         this.transactionService = transactionService;
@@ -54,15 +70,41 @@ public class AdminController {
         this.passwordEncoder = passwordEncoder;
         this.userRepository = userRepository;
         this.messageService = messageService;
+        this.dailyBalanceService = dailyBalanceService;
+        this.accountDesignationService = accountDesignationService;
+        this.decimal128MigrationService = decimal128MigrationService;
+        this.adminListingService = adminListingService;
     }
     // ---------------------------------------------------------------//
 
-    // endpoint to get all clients
+    // endpoint to page through all users, filtered by role and creation date
+    // pass the nextCursor of a page to get the next one, fields selects what each row contains
     @GetMapping("/users")
-    public ResponseEntity<List<User>> getAllUsers() {
-        // fetch all users from the userService and returns them
-        List<User> users = userService.getAllUsers();
-        return ResponseEntity.ok(users);
+    public ResponseEntity<CursorPage<ObjectNode>> getAllUsers(
+            @RequestParam(required = false) String role,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        AdminListingService.Filter filter = new AdminListingService.Filter()
+                .with("role", role)
+                .between(from, to);
+        return ResponseEntity.ok(adminListingService.list(AdminListingService.Listing.USERS, filter, fields,
+                cursor, size));
+    }
+
+    // endpoint to stream all users as NDJSON with the same filters and fields, in no particular order
+    @GetMapping("/users/stream")
+    public ResponseEntity<StreamingResponseBody> streamAllUsers(
+            @RequestParam(required = false) String role,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String fields) {
+        AdminListingService.Filter filter = new AdminListingService.Filter()
+                .with("role", role)
+                .between(from, to);
+        return ndjson(adminListingService.stream(AdminListingService.Listing.USERS, filter, fields));
     }
 
     // endpoint to get a user by card number
@@ -92,8 +134,8 @@ public class AdminController {
         Optional<User> existingUser = userService.getUserByCardNumber(cardNumber);
         if (existingUser.isPresent()) {
             updatedUser.setCardNumber(cardNumber);
-            // update the user card number using the userService
-            User savedUser = userService.createUser(updatedUser);
+            // update the user using the userService, this also revokes the user's existing tokens
+            User savedUser = userService.updateUser(updatedUser);
             return ResponseEntity.ok(savedUser);
         }
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
@@ -107,12 +149,34 @@ public class AdminController {
         return ResponseEntity.noContent().build();
     }
 
-    // endpoint to get all clients
+    // endpoint to page through all clients, filtered by activation and creation date
+    // pass the nextCursor of a page to get the next one, fields selects what each row contains
     @GetMapping("/clients")
-    public ResponseEntity<List<Client>> getAllClients() {
-        // fetch all clients from the clientService and return them
-        List<Client> clients = clientService.getAllClients();
-        return ResponseEntity.ok(clients);
+    public ResponseEntity<CursorPage<ObjectNode>> getAllClients(
+            @RequestParam(required = false) Boolean activated,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        AdminListingService.Filter filter = new AdminListingService.Filter()
+                .with("activated", activated)
+                .between(from, to);
+        return ResponseEntity.ok(adminListingService.list(AdminListingService.Listing.CLIENTS, filter, fields,
+                cursor, size));
+    }
+
+    // endpoint to stream all clients as NDJSON with the same filters and fields, in no particular order
+    @GetMapping("/clients/stream")
+    public ResponseEntity<StreamingResponseBody> streamAllClients(
+            @RequestParam(required = false) Boolean activated,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String fields) {
+        AdminListingService.Filter filter = new AdminListingService.Filter()
+                .with("activated", activated)
+                .between(from, to);
+        return ndjson(adminListingService.stream(AdminListingService.Listing.CLIENTS, filter, fields));
     }
 
     // endpoint to get a client by ID
@@ -142,8 +206,8 @@ public class AdminController {
         Optional<Client> existingClient = clientService.getClientById(clientId);
         if (existingClient.isPresent()) {
             updatedClient.setClientId(clientId);
-            // update the client id using the clientService
-            Client savedClient = clientService.createClient(updatedClient);
+            // update the client using the clientService, this also revokes the client's existing tokens
+            Client savedClient = clientService.updateClient(updatedClient);
             return ResponseEntity.ok(savedClient);
         }
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
@@ -157,12 +221,42 @@ public class AdminController {
         return ResponseEntity.noContent().build();
     }
 
-    // endpoint to get all accounts
+    // endpoint to page through all accounts, filtered by client, type, status and creation date
+    // pass the nextCursor of a page to get the next one, fields selects what each row contains
     @GetMapping("/accounts")
-    public ResponseEntity<List<Account>> getAllAccounts() {
-        // fetch all accounts from the accountSevice and return them
-        List<Account> accounts = accountService.getAllAccounts();
-        return ResponseEntity.ok(accounts);
+    public ResponseEntity<CursorPage<ObjectNode>> getAllAccounts(
+            @RequestParam(required = false) String clientId,
+            @RequestParam(required = false) String accountType,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        AdminListingService.Filter filter = new AdminListingService.Filter()
+                .with("clientId", clientId)
+                .with("accountType", accountType)
+                .with("status", status)
+                .between(from, to);
+        return ResponseEntity.ok(adminListingService.list(AdminListingService.Listing.ACCOUNTS, filter, fields,
+                cursor, size));
+    }
+
+    // endpoint to stream all accounts as NDJSON with the same filters and fields, in no particular order
+    @GetMapping("/accounts/stream")
+    public ResponseEntity<StreamingResponseBody> streamAllAccounts(
+            @RequestParam(required = false) String clientId,
+            @RequestParam(required = false) String accountType,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String fields) {
+        AdminListingService.Filter filter = new AdminListingService.Filter()
+                .with("clientId", clientId)
+                .with("accountType", accountType)
+                .with("status", status)
+                .between(from, to);
+        return ndjson(adminListingService.stream(AdminListingService.Listing.ACCOUNTS, filter, fields));
     }
 
     // endpoint to get an account by ID
@@ -192,8 +286,8 @@ public class AdminController {
         Optional<Account> existingAccount = accountService.getAccountById(accountId);
         if (existingAccount.isPresent()) {
             updatedAccount.setAccountId(accountId);
-            // update the account id using the accountService
-            Account savedAccount = accountService.createAccount(updatedAccount);
+            // update the account using the accountService
+            Account savedAccount = accountService.updateAccount(updatedAccount);
             return ResponseEntity.ok(savedAccount);
         }
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
@@ -206,12 +300,38 @@ public class AdminController {
         return ResponseEntity.noContent().build();
     }
 
-    // endpoint to get all transactions
+    // endpoint to page through all transactions newest first, filtered by account, type and date range
+    // pass the nextCursor of a page to get the next one, fields selects what each row contains
     @GetMapping("/transactions")
-    public ResponseEntity<List<Transaction>> getAllTransactions() {
-        // fetch all transactions from the transactionService and return them
-        List<Transaction> transactions = transactionService.getAllTransactions();
-        return ResponseEntity.ok(transactions);
+    public ResponseEntity<CursorPage<ObjectNode>> getAllTransactions(
+            @RequestParam(required = false) String accountId,
+            @RequestParam(required = false) String transactionType,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        AdminListingService.Filter filter = new AdminListingService.Filter()
+                .with("accountId", accountId)
+                .with("transactionType", transactionType)
+                .between(from, to);
+        return ResponseEntity.ok(adminListingService.list(AdminListingService.Listing.TRANSACTIONS, filter, fields,
+                cursor, size));
+    }
+
+    // endpoint to stream all transactions as NDJSON with the same filters and fields, in no particular order
+    @GetMapping("/transactions/stream")
+    public ResponseEntity<StreamingResponseBody> streamAllTransactions(
+            @RequestParam(required = false) String accountId,
+            @RequestParam(required = false) String transactionType,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String fields) {
+        AdminListingService.Filter filter = new AdminListingService.Filter()
+                .with("accountId", accountId)
+                .with("transactionType", transactionType)
+                .between(from, to);
+        return ndjson(adminListingService.stream(AdminListingService.Listing.TRANSACTIONS, filter, fields));
     }
 
     // endpoint to get a transaction by ID
@@ -224,6 +344,45 @@ public class AdminController {
                 .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND).body(null));
     }
 
+    // endpoint to rebuild the daily balance rollup from the transactions
+    // rebuilds one account when accountId is given, otherwise every account
+    @PostMapping("/daily-balances/backfill")
+    public ResponseEntity<DailyBalanceService.BackfillResult> backfillDailyBalances(
+            @RequestParam(required = false) String accountId) {
+        DailyBalanceService.BackfillResult result = accountId != null
+                ? dailyBalanceService.backfill(accountId)
+                : dailyBalanceService.backfillAll();
+        return ResponseEntity.ok(result);
+    }
+
+    // endpoint to give every client created before the account pointers its primary and default deposit account
+    // clients are also migrated one by one on first use, this does the rest in bulk
+    @PostMapping("/clients/account-designations/migrate")
+    public ResponseEntity<AccountDesignationService.MigrationResult> migrateAccountDesignations() {
+        return ResponseEntity.ok(accountDesignationService.migrateAll());
+    }
+
+    // endpoint to start or resume converting money stored as strings to Decimal128 in the background
+    // restart=true walks every collection again, e.g. after importing old data
+    @PostMapping("/migrations/decimal128")
+    public ResponseEntity<MigrationProgress> startDecimal128Migration(
+            @RequestParam(defaultValue = "false") boolean restart) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(decimal128MigrationService.start(restart));
+    }
+
+    // endpoint to follow the Decimal128 migration
+    @GetMapping("/migrations/decimal128")
+    public ResponseEntity<MigrationProgress> getDecimal128MigrationProgress() {
+        return ResponseEntity.ok(decimal128MigrationService.getProgress());
+    }
+
+    // NDJSON responses of the streamed listings
+    private ResponseEntity<StreamingResponseBody> ndjson(StreamingResponseBody body) {
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_TYPE, "application/x-ndjson")
+                .body(body);
+    }
+
     // endpoint to make a new admin account
     @PostMapping("/create-admin")
     public ResponseEntity<User> createAdminAccount(@RequestBody Map<String, String> adminDetails) {
@@ -243,8 +402,8 @@ public class AdminController {
         adminUser.setCreatedAt(java.time.LocalDateTime.now());
         adminUser.setUpdatedAt(java.time.LocalDateTime.now());
 
-        // save the admin user to the database
-        User savedAdmin = userRepository.save(adminUser); 
+        // save the admin user to the database, through the userService so cached details of the card are dropped
+        User savedAdmin = userService.createUser(adminUser);
 
         return ResponseEntity.status(HttpStatus.CREATED).body(savedAdmin);
     }
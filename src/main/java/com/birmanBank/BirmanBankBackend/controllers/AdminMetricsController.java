@@ -0,0 +1,119 @@
+package com.birmanBank.BirmanBankBackend.controllers;
+
+import com.birmanBank.BirmanBankBackend.services.AccountOwnerService;
+import com.birmanBank.BirmanBankBackend.services.AuthenticationService;
+import com.birmanBank.BirmanBankBackend.services.ClientServices.AccountSequencer;
+import com.birmanBank.BirmanBankBackend.services.ClientServices.RecipientDirectoryService;
+import com.birmanBank.BirmanBankBackend.services.OutboxDispatcher;
+import com.birmanBank.BirmanBankBackend.services.PasswordHashingService;
+import com.birmanBank.BirmanBankBackend.services.RequestIdentityMap;
+import com.birmanBank.BirmanBankBackend.services.SessionSummaryService;
+import com.birmanBank.BirmanBankBackend.services.TransactionStorageService;
+import com.birmanBank.BirmanBankBackend.utils.JwtUtil;
+import com.birmanBank.BirmanBankBackend.utils.LruCache;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * AdminMetricsController exposes runtime metrics of the backend to admins
+ * it is read only and meant for diagnosing contention and throughput problems
+ */
+
+@RestController
+@RequestMapping("/api/admin/metrics")
+public class AdminMetricsController {
+
+    //-----------------------Constructors----------------------//
+    private final AccountSequencer accountSequencer;
+    private final OutboxDispatcher outboxDispatcher;
+    private final JwtUtil jwtUtil;
+    private final AuthenticationService authenticationService;
+    private final PasswordHashingService passwordHashingService;
+    private final SessionSummaryService sessionSummaryService;
+    private final RequestIdentityMap requestIdentityMap;
+    private final AccountOwnerService accountOwnerService;
+    private final RecipientDirectoryService recipientDirectoryService;
+    private final TransactionStorageService transactionStorageService;
+
+    public AdminMetricsController(AccountSequencer accountSequencer, OutboxDispatcher outboxDispatcher,
+            JwtUtil jwtUtil, AuthenticationService authenticationService,
+            PasswordHashingService passwordHashingService, SessionSummaryService sessionSummaryService,
+            RequestIdentityMap requestIdentityMap, AccountOwnerService accountOwnerService,
+            RecipientDirectoryService recipientDirectoryService,
+            TransactionStorageService transactionStorageService) {
+        this.accountSequencer = accountSequencer;
+        this.outboxDispatcher = outboxDispatcher;
+        this.jwtUtil = jwtUtil;
+        this.authenticationService = authenticationService;
+        this.passwordHashingService = passwordHashingService;
+        this.sessionSummaryService = sessionSummaryService;
+        this.requestIdentityMap = requestIdentityMap;
+        this.accountOwnerService = accountOwnerService;
+        this.recipientDirectoryService = recipientDirectoryService;
+        this.transactionStorageService = transactionStorageService;
+    }
+    // ---------------------------------------------------------------//
+
+    // endpoint to get queue depth and wait times of every account sequencer lane
+    @GetMapping("/account-sequencer")
+    public ResponseEntity<List<AccountSequencer.StripeStats>> getAccountSequencerStats() {
+        return ResponseEntity.ok(accountSequencer.getStats());
+    }
+
+    // endpoint to get the notification outbox backlog and dispatch lag
+    @GetMapping("/outbox")
+    public ResponseEntity<OutboxDispatcher.OutboxStats> getOutboxStats() {
+        return ResponseEntity.ok(outboxDispatcher.getStats());
+    }
+
+    // endpoint to get the hit rate of the verified token cache
+    @GetMapping("/jwt-cache")
+    public ResponseEntity<LruCache.Stats> getJwtCacheStats() {
+        return ResponseEntity.ok(jwtUtil.getVerifiedTokenCacheStats());
+    }
+
+    // endpoint to get the hit rate of the user details cache used by login and older tokens
+    @GetMapping("/user-details-cache")
+    public ResponseEntity<LruCache.Stats> getUserDetailsCacheStats() {
+        return ResponseEntity.ok(authenticationService.getUserDetailsCacheStats());
+    }
+
+    // endpoint to get the hashing pool usage and the hash and verify latency histograms
+    @GetMapping("/password-hashing")
+    public ResponseEntity<PasswordHashingService.HashingStats> getPasswordHashingStats() {
+        return ResponseEntity.ok(passwordHashingService.getStats());
+    }
+
+    // endpoint to get the hit rate of the session summary cache behind /api/auth/session-check
+    @GetMapping("/session-cache")
+    public ResponseEntity<LruCache.Stats> getSessionCacheStats() {
+        return ResponseEntity.ok(sessionSummaryService.getStats());
+    }
+
+    // endpoint to get how many account, client and user lookups the request identity map answered without a query
+    @GetMapping("/identity-map")
+    public ResponseEntity<RequestIdentityMap.Stats> getIdentityMapStats() {
+        return ResponseEntity.ok(requestIdentityMap.getStats());
+    }
+
+    // endpoint to get the hit rate of the account owner cache behind the account ownership checks
+    @GetMapping("/account-owner-cache")
+    public ResponseEntity<LruCache.Stats> getAccountOwnerCacheStats() {
+        return ResponseEntity.ok(accountOwnerService.getStats());
+    }
+
+    // endpoint to get the hit rate of the recipient directory used by phone number transfers
+    @GetMapping("/recipient-directory")
+    public ResponseEntity<LruCache.Stats> getRecipientDirectoryStats() {
+        return ResponseEntity.ok(recipientDirectoryService.getStats());
+    }
+
+    // endpoint to get the storage size of the transactions collection in its current layout (standard or timeseries)
+    @GetMapping("/transaction-storage")
+    public ResponseEntity<TransactionStorageService.StorageReport> getTransactionStorageReport() {
+        return ResponseEntity.ok(transactionStorageService.getReport());
+    }
+}
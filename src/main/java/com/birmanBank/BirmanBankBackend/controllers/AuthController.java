@@ -10,6 +10,13 @@ import com.birmanBank.BirmanBankBackend.repositories.UserRepository;
 import com.birmanBank.BirmanBankBackend.services.AuthenticationService;
 import com.birmanBank.BirmanBankBackend.services.ClientServices.AccountService;
 import com.birmanBank.BirmanBankBackend.services.MessageService;
+import com.birmanBank.BirmanBankBackend.services.PasswordHashingService;
+import com.birmanBank.BirmanBankBackend.services.RefreshTokenService;
+import com.birmanBank.BirmanBankBackend.services.SessionSummaryService;
+import com.birmanBank.BirmanBankBackend.services.TokenEpochService;
+import com.birmanBank.BirmanBankBackend.utils.JwtUtil;
+
+import io.jsonwebtoken.Claims;
 
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.http.HttpStatus;
@@ -44,11 +51,15 @@ public class AuthController {
     private final PasswordEncoder passwordEncoder;
     private final AccountService accountService;
     private final MessageService messageService;
+    private final RefreshTokenService refreshTokenService;
+    private final SessionSummaryService sessionSummaryService;
+    private final TokenEpochService tokenEpochService;
 
     public AuthController(AuthenticationManager authenticationManager, AuthenticationService authenticationService,
             UserRepository userRepository, ClientRepository clientRepository,
             PasswordEncoder passwordEncoder, AccountService accountService,
-            MessageService messageService) {
+            MessageService messageService, RefreshTokenService refreshTokenService,
+            SessionSummaryService sessionSummaryService, TokenEpochService tokenEpochService) {
         this.authenticationManager = authenticationManager;
         this.authenticationService = authenticationService;
         this.userRepository = userRepository;
@@ -56,6 +67,9 @@ public class AuthController {
         this.passwordEncoder = passwordEncoder;
         this.accountService = accountService;
         this.messageService = messageService;
+        this.refreshTokenService = refreshTokenService;
+        this.sessionSummaryService = sessionSummaryService;
+        this.tokenEpochService = tokenEpochService;
     }
     // ---------------------------------------------------------------//
 
@@ -77,24 +91,39 @@ public class AuthController {
             Authentication authentication = authenticationManager.authenticate(
                     new UsernamePasswordAuthenticationToken(cardNumber, password));
 
-            // generate a JWT token
-            String token = authenticationService.generateToken(authentication.getName());
-
-            // fetch the user
-            User user = authenticationService.getClientByCardNumber(cardNumber);
+            // generate a JWT token and the refresh token that renews it
+            RefreshTokenService.TokenPair tokens = authenticationService.generateTokens(authentication.getName());
 
             response.put("message", "Login successful");
-            response.put("token", token);
-            response.put("role", user.getRole());
+            response.put("token", tokens.accessToken());
+            response.put("refreshToken", tokens.refreshToken());
+            response.put("role", tokens.role());
 
             return ResponseEntity.ok(response);
 
+        } catch (PasswordHashingService.TooManyRequestsException e) {
+            // the hashing pool is full, tell the client to back off rather than reporting bad credentials
+            throw e;
         } catch (Exception e) {
             response.put("message", "Invalid credentials or user not found");
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
         }
     }
 
+    // endpoint to get a new JWT token with a refresh token instead of logging in again
+    // the refresh token is used up, the response carries the one to use next time
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refresh(@RequestBody Map<String, String> refreshRequest) {
+        RefreshTokenService.TokenPair tokens = refreshTokenService.rotate(refreshRequest.get("refreshToken"));
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("message", "Token refreshed");
+        response.put("token", tokens.accessToken());
+        response.put("refreshToken", tokens.refreshToken());
+        response.put("role", tokens.role());
+        return ResponseEntity.ok(response);
+    }
+
     // endpoint to handle user registration
     @PostMapping("/register")
     public Map<String, String> register(@RequestBody Map<String, Object> requestBody) {
@@ -140,6 +169,7 @@ public class AuthController {
                 .updatedAt(LocalDateTime.now())
                 .build();
         userRepository.save(user);
+        tokenEpochService.reinstate(cardNumber);
 
         // builds and saves the client object
         Client client = Client.builder()
@@ -189,31 +219,13 @@ public class AuthController {
     public ResponseEntity<?> sessionCheck(HttpServletRequest request) {
         Map<String, Object> response = new HashMap<>();
         try {
-            // Validate and extract the card number
-            String cardNumber = authenticationService.validateAndExtractUsername(request.getHeader("Authorization"));
-
-            // Fetch the user
-            User user = authenticationService.getClientByCardNumber(cardNumber);
-
-            // Check if the user is an admin
-            if (authenticationService.isAdmin(user)) {
-                response.put("isAuthenticated", true);
-                response.put("user", Map.of(
-                        "cardNumber", user.getCardNumber(),
-                        "role", user.getRole(),
-                        "isAdmin", true));
-            } else {
-                // Fetch the client if the user is not an admin
-                Client client = authenticationService.getClientByUserCardNumber(user.getCardNumber());
-
-                response.put("isAuthenticated", true);
-                response.put("user", Map.of(
-                        "cardNumber", user.getCardNumber(),
-                        "role", user.getRole(),
-                        "isAdmin", false,
-                        "firstName", client.getFirstName(),
-                        "activated", client.getActivated()));
-            }
+            // Validate the token and read the card number and role from its claims
+            Claims claims = authenticationService.validateAndExtractClaims(request.getHeader("Authorization"));
+
+            // the summary is cached per user, a miss costs at most one projected clients query
+            response.put("isAuthenticated", true);
+            response.put("user", sessionSummaryService.getSessionUser(claims.getSubject(),
+                    claims.get(JwtUtil.CLAIM_ROLE, String.class)));
         } catch (Exception e) {
             response.put("isAuthenticated", false);
             response.put("error", e.getMessage());
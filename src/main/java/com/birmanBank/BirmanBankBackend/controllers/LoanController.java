@@ -3,6 +3,7 @@ package com.birmanBank.BirmanBankBackend.controllers;
 import com.birmanBank.BirmanBankBackend.models.Loan;
 import com.birmanBank.BirmanBankBackend.services.LoanService;
 import com.birmanBank.BirmanBankBackend.services.AuthenticationService;
+import com.birmanBank.BirmanBankBackend.services.IdempotencyService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -17,6 +18,7 @@ import java.util.Map;
 public class LoanController {
     private final LoanService loanService;
     private final AuthenticationService authService;
+    private final IdempotencyService idempotencyService;
 
     // endpoint for user requesting a loan.
     @PostMapping("/request")
@@ -36,12 +38,16 @@ public class LoanController {
     }
 
     // endpoint for making a loan payment.
+    // retries with the same Idempotency-Key header replay the first response instead of paying again.
     @PostMapping("/{loanId}/pay")
-    public ResponseEntity<Loan> payLoan(@PathVariable String loanId,
-                                        @RequestBody Map<String, String> body,
-                                        @RequestHeader("Authorization") String auth) {
-        authService.validateAndExtractUsername(auth);
-        BigDecimal payment = new BigDecimal(body.get("amount"));
-        return ResponseEntity.ok(loanService.payDownLoan(loanId, payment));
+    public ResponseEntity<?> payLoan(@PathVariable String loanId,
+                                     @RequestBody Map<String, String> body,
+                                     @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+                                     @RequestHeader("Authorization") String auth) {
+        String userCard = authService.validateAndExtractUsername(auth);
+        return idempotencyService.execute(idempotencyKey, userCard, "loan-payment:" + loanId, body, () -> {
+            BigDecimal payment = new BigDecimal(body.get("amount"));
+            return ResponseEntity.ok(loanService.payDownLoan(loanId, payment));
+        });
     }
 }
@@ -1,6 +1,10 @@
 package com.birmanBank.BirmanBankBackend.controllers;
 
+import com.birmanBank.BirmanBankBackend.dto.BatchTransferRequest;
+import com.birmanBank.BirmanBankBackend.dto.BatchTransferResult;
 import com.birmanBank.BirmanBankBackend.services.AuthenticationService;
+import com.birmanBank.BirmanBankBackend.services.IdempotencyService;
+import com.birmanBank.BirmanBankBackend.services.ClientServices.BatchTransferService;
 import com.birmanBank.BirmanBankBackend.services.ClientServices.TransactionService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -10,6 +14,7 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -24,17 +29,24 @@ public class TransactionController {
     //-----------------------Constructors----------------------//
     private final TransactionService transactionService;
     private final AuthenticationService authenticationService;
+    private final BatchTransferService batchTransferService;
+    private final IdempotencyService idempotencyService;
 
-    public TransactionController(TransactionService transactionService, AuthenticationService authenticationService) {
+    public TransactionController(TransactionService transactionService, AuthenticationService authenticationService,
+            BatchTransferService batchTransferService, IdempotencyService idempotencyService) {
         this.transactionService = transactionService;
         this.authenticationService = authenticationService;
+        this.batchTransferService = batchTransferService;
+        this.idempotencyService = idempotencyService;
     }
     // ---------------------------------------------------------------//
 
     // ndepoint to transfer money between accounts
+    // retries with the same Idempotency-Key header replay the first response instead of transferring again
     @PostMapping("/transfer")
-    public ResponseEntity<Map<String, String>> transferMoney(
+    public ResponseEntity<?> transferMoney(
             @RequestBody Map<String, Object> transferRequest,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             @AuthenticationPrincipal UserDetails userDetails) {
         
         // get the authenticated client ID from the token and validate the user
@@ -42,61 +54,66 @@ public class TransactionController {
         String senderAccountId = (String) transferRequest.get("senderAccountId"); // get the sender account ID from the request
         String recipientPhoneNumber = (String) transferRequest.get("recipientPhoneNumber"); // get the recipient phone number from the request
 
-
-        BigDecimal amount;
-        try {
-            // parse the amount from the request and convert it to BigDecimal
-            amount = new BigDecimal(transferRequest.get("amount").toString());
-        } catch (NumberFormatException e) {
-            // handle the case where the amount is not a valid number
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                    .body(Map.of("error", "Invalid amount format"));
-        }
-
-        try {
-            // start the transfer process by calling the service
-            transactionService.transferMoney(authenticatedClientId, senderAccountId, recipientPhoneNumber, amount);
-            return ResponseEntity.ok(Map.of("message", "Transfer successful")); //if it completes successfully
-        } catch (ResponseStatusException e) {
-            return ResponseEntity.status(e.getStatusCode())
-                    .body(Map.of("error", e.getReason()));
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(Map.of("error", "An unexpected error occurred"));
-        }
+        return idempotencyService.execute(idempotencyKey, authenticatedClientId, "transfer", transferRequest, () -> {
+            BigDecimal amount;
+            try {
+                // parse the amount from the request and convert it to BigDecimal
+                amount = new BigDecimal(transferRequest.get("amount").toString());
+            } catch (NumberFormatException e) {
+                // handle the case where the amount is not a valid number
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                        .body(Map.of("error", "Invalid amount format"));
+            }
+
+            try {
+                // start the transfer process by calling the service
+                transactionService.transferMoney(authenticatedClientId, senderAccountId, recipientPhoneNumber, amount);
+                return ResponseEntity.ok(Map.of("message", "Transfer successful")); //if it completes successfully
+            } catch (ResponseStatusException e) {
+                return ResponseEntity.status(e.getStatusCode())
+                        .body(Map.of("error", e.getReason()));
+            } catch (Exception e) {
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                        .body(Map.of("error", "An unexpected error occurred"));
+            }
+        });
     }
 
     // endpoint to deposit money into an account
+    // retries with the same Idempotency-Key header replay the first response instead of depositing again
     @PostMapping("/deposit")
-    public ResponseEntity<Map<String, String>> depositMoney(
+    public ResponseEntity<?> depositMoney(
             @RequestBody Map<String, Object> depositRequest,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             @AuthenticationPrincipal UserDetails userDetails) {
 
         // get the authenticated client ID from the token and validate the user
         String authenticatedClientId = authenticationService.validateAuthenticatedUser(userDetails);
         String accountId = (String) depositRequest.get("accountId"); // get the account ID from the request
 
-        BigDecimal amount;
-        try {
-            // parse the amount from the request and convert it to BigDecimal
-            amount = new BigDecimal(depositRequest.get("amount").toString());
-        } catch (NumberFormatException e) {
-            // handle the case where the amount is not a valid number
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                    .body(Map.of("error", "Invalid amount format"));
-        }
-
-        try {
-            // start the transfer process by calling the service
-            transactionService.depositMoney(authenticatedClientId, accountId, amount);
-            return ResponseEntity.ok(Map.of("message", "Deposit successful")); //if it completes successfully
-        } catch (ResponseStatusException e) {
-            return ResponseEntity.status(e.getStatusCode())
-                    .body(Map.of("error", e.getReason()));
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(Map.of("error", "An unexpected error occurred"));
-        }
+        return idempotencyService.execute(idempotencyKey, authenticatedClientId, "deposit", depositRequest, () -> {
+            BigDecimal amount;
+            try {
+                // parse the amount from the request and convert it to BigDecimal
+                amount = new BigDecimal(depositRequest.get("amount").toString());
+            } catch (NumberFormatException e) {
+                // handle the case where the amount is not a valid number
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                        .body(Map.of("error", "Invalid amount format"));
+            }
+
+            try {
+                // start the transfer process by calling the service
+                transactionService.depositMoney(authenticatedClientId, accountId, amount);
+                return ResponseEntity.ok(Map.of("message", "Deposit successful")); //if it completes successfully
+            } catch (ResponseStatusException e) {
+                return ResponseEntity.status(e.getStatusCode())
+                        .body(Map.of("error", e.getReason()));
+            } catch (Exception e) {
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                        .body(Map.of("error", "An unexpected error occurred"));
+            }
+        });
     }
 
     @PostMapping("/internal-transfer")
@@ -137,4 +154,35 @@ public class TransactionController {
                     .body(Map.of("error", "An unexpected error occurred during the transfer"));
         }
     }
+
+    // endpoint to apply many transfers from the authenticated client in one request
+    // each transfer is reported on its own, a failed item does not fail the batch
+    // retries with the same Idempotency-Key header replay the first response instead of applying the batch again
+    @PostMapping("/batch")
+    public ResponseEntity<?> batchTransfer(
+            @RequestBody BatchTransferRequest batchRequest,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            @AuthenticationPrincipal UserDetails userDetails) {
+
+        // get the authenticated client ID from the token and validate the user
+        String authenticatedClientId = authenticationService.validateAuthenticatedUser(userDetails);
+
+        return idempotencyService.execute(idempotencyKey, authenticatedClientId, "batch", batchRequest, () -> {
+            try {
+                List<BatchTransferResult> results = batchTransferService.batchTransfer(authenticatedClientId,
+                        batchRequest.getTransfers());
+                long succeeded = results.stream().filter(result -> "SUCCESS".equals(result.getStatus())).count();
+                return ResponseEntity.ok(Map.of(
+                        "succeeded", succeeded,
+                        "failed", results.size() - succeeded,
+                        "results", results));
+            } catch (ResponseStatusException e) {
+                return ResponseEntity.status(e.getStatusCode())
+                        .body(Map.of("error", e.getReason()));
+            } catch (Exception e) {
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                        .body(Map.of("error", "An unexpected error occurred during the batch transfer"));
+            }
+        });
+    }
 }
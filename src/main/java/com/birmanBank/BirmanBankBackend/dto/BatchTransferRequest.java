@@ -0,0 +1,18 @@
+package com.birmanBank.BirmanBankBackend.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+import lombok.Data;
+
+@Data
+public class BatchTransferRequest {
+    private List<TransferItem> transfers;
+
+    // a single transfer of the batch, same fields as /api/transactions/transfer
+    @Data
+    public static class TransferItem {
+        private String senderAccountId;
+        private String recipientPhoneNumber;
+        private BigDecimal amount;
+    }
+}
@@ -0,0 +1,24 @@
+package com.birmanBank.BirmanBankBackend.dto;
+
+import java.math.BigDecimal;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchTransferResult {
+    private int index; // position of the transfer in the request
+    private String status; // SUCCESS or FAILED
+    private String message;
+    private BigDecimal postTransactionBalance; // sender balance after this transfer, null when failed
+
+    public static BatchTransferResult success(int index, BigDecimal postTransactionBalance) {
+        return new BatchTransferResult(index, "SUCCESS", "Transfer successful", postTransactionBalance);
+    }
+
+    public static BatchTransferResult failure(int index, String message) {
+        return new BatchTransferResult(index, "FAILED", message, null);
+    }
+}
@@ -0,0 +1,16 @@
+package com.birmanBank.BirmanBankBackend.dto;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+    private List<T> content;
+    private String nextCursor; // pass back to get the next page, null on the last page
+    private boolean hasMore;
+    private Long totalElements; // only counted when the client asks for it
+}
@@ -0,0 +1,26 @@
+package com.birmanBank.BirmanBankBackend.dto;
+
+import com.birmanBank.BirmanBankBackend.models.DailyBalance;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailyBalanceReport {
+    private String accountId;
+    private LocalDate from;
+    private LocalDate to;
+    private BigDecimal openingBalance; // balance at the start of the first day
+    private BigDecimal closingBalance; // balance at the end of the last day
+    private BigDecimal totalCredits;
+    private BigDecimal totalDebits;
+    private long transactionCount;
+    private BigDecimal averageDailyBalance; // mean of the end of day balances, days without activity carry forward
+    private List<DailyBalance> days; // only the days with activity
+}
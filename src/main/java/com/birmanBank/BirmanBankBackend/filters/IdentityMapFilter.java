@@ -0,0 +1,50 @@
+package com.birmanBank.BirmanBankBackend.filters;
+
+import com.birmanBank.BirmanBankBackend.services.RequestIdentityMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/*
+ * the purpose of this filter is to close the request's identity map once the request is handled
+ * it records how many lookups the map answered without a database round trip
+ * and logs the counts of every request at debug level
+ */
+
+@Component
+public class IdentityMapFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(IdentityMapFilter.class);
+
+    private final RequestIdentityMap requestIdentityMap;
+
+    public IdentityMapFilter(RequestIdentityMap requestIdentityMap) {
+        this.requestIdentityMap = requestIdentityMap;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+            if (attributes != null) {
+                RequestIdentityMap.Counts counts = requestIdentityMap.completeRequest(attributes);
+                if (log.isDebugEnabled() && counts.loads() > 0) {
+                    log.debug("{} {}: {} documents loaded, {} round trips avoided", request.getMethod(),
+                            request.getRequestURI(), counts.loads(), counts.hits());
+                }
+            }
+        }
+    }
+}
@@ -1,6 +1,11 @@
 package com.birmanBank.BirmanBankBackend.filters;
 
+import com.birmanBank.BirmanBankBackend.services.AuthenticationService;
+import com.birmanBank.BirmanBankBackend.services.TokenEpochService;
 import com.birmanBank.BirmanBankBackend.utils.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -13,12 +18,15 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.List;
 
 /*
  * the purpose of this filter is to intercept incoming requests and check if they contain a valid JWT token
  * it uses the header key "Authorization" to extract the token
  * if the token is valid, it sets the authentication in the security context
  * this allows the application to authenticate the user based on the token
+ * tokens that carry the role, activation and epoch claims are authorized from the claims alone,
+ * older tokens without them still load the user from the database
  * the filter needed for every request to the application
  */
 
@@ -27,10 +35,13 @@ public class JwtRequestFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwtUtil;
     private final UserDetailsService userDetailsService;
+    private final TokenEpochService tokenEpochService;
 
-    public JwtRequestFilter(JwtUtil jwtUtil, UserDetailsService userDetailsService) {
+    public JwtRequestFilter(JwtUtil jwtUtil, UserDetailsService userDetailsService,
+            TokenEpochService tokenEpochService) {
         this.jwtUtil = jwtUtil;
         this.userDetailsService = userDetailsService;
+        this.tokenEpochService = tokenEpochService;
     }
 
     @Override
@@ -40,30 +51,58 @@ public class JwtRequestFilter extends OncePerRequestFilter {
         // extract the Authorization header from the request
         final String authorizationHeader = request.getHeader("Authorization");
 
-        String username = null;
-        String jwt = null;
+        Claims claims = null;
 
         // check if the Authorization header is present and starts with "Bearer "
+        // the token is verified once here, its signature and expiry are checked while reading the username
         if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
-            jwt = authorizationHeader.substring(7); // extract the token from the header
-            username = jwtUtil.extractUsername(jwt); // extract the username from the token
+            String jwt = authorizationHeader.substring(7); // extract the token from the header
+            try {
+                claims = jwtUtil.verify(jwt); // the username is the subject of the verified token
+            } catch (JwtException | IllegalArgumentException e) {
+                // invalid or expired token, the request continues unauthenticated
+            }
         }
 
         // verify if the username is not null and if the user is not already
         // authenticated
         // if the user is not authenticated, load the user details and set the
         // authentication in the security context
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
+        if (claims != null && claims.getSubject() != null
+                && SecurityContextHolder.getContext().getAuthentication() == null) {
+            UserDetails userDetails = loadUserDetails(claims);
 
-            if (jwtUtil.validateToken(jwt)) {
-                UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(
-                        userDetails, null, userDetails.getAuthorities());
-                SecurityContextHolder.getContext().setAuthentication(authenticationToken);
+            // a token issued before the user's epoch was bumped has been revoked
+            if (userDetails == null) {
+                chain.doFilter(request, response);
+                return;
             }
+
+            UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(
+                    userDetails, null, userDetails.getAuthorities());
+            SecurityContextHolder.getContext().setAuthentication(authenticationToken);
         }
 
         // continue the filter chain
         chain.doFilter(request, response);
     }
+
+    // builds the user from the signed claims, will return null when the token's epoch is no longer current
+    private UserDetails loadUserDetails(Claims claims) {
+        String username = claims.getSubject();
+        Object epoch = claims.get(JwtUtil.CLAIM_EPOCH);
+        String role = claims.get(JwtUtil.CLAIM_ROLE, String.class);
+
+        // tokens issued before the claims existed
+        if (!(epoch instanceof Number) || role == null) {
+            return this.userDetailsService.loadUserByUsername(username);
+        }
+
+        if (!tokenEpochService.isCurrent(username, ((Number) epoch).longValue())) {
+            return null;
+        }
+        List<GrantedAuthority> authorities = AuthenticationService.buildAuthorities(role,
+                claims.get(JwtUtil.CLAIM_ACTIVATED, Boolean.class));
+        return new org.springframework.security.core.userdetails.User(username, "", authorities);
+    }
 }
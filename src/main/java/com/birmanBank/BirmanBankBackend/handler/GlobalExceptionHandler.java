@@ -16,7 +16,7 @@ public class GlobalExceptionHandler {
         // Prepare a map to send the message
         Map<String, String> errorResponse = new HashMap<>();
         errorResponse.put("message", ex.getReason());
-        // Return the response with status code and message
-        return new ResponseEntity<>(errorResponse, ex.getStatusCode());
+        // Return the response with status code, headers (e.g. Retry-After) and message
+        return new ResponseEntity<>(errorResponse, ex.getHeaders(), ex.getStatusCode());
     }
 }
@@ -2,6 +2,8 @@ package com.birmanBank.BirmanBankBackend.models;
 
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -11,15 +13,17 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @Builder
 @Document(collection = "accounts")
+@CompoundIndex(name = "status_id", def = "{ 'status': 1, '_id': 1 }") // admin listing filtered by status
 public class Account {
     @Id
     private String accountId;
 
+    @Indexed // findByClientId
     private String clientId;  
 
     private String accountName;
     private String accountType;
-    private BigDecimal balance; 
+    private BigDecimal balance; // Decimal128, so it can be guarded and $inc'd server-side
     private String status; 
 
     private LocalDateTime createdAt;
@@ -2,6 +2,8 @@ package com.birmanBank.BirmanBankBackend.models;
 
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -11,20 +13,28 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @Builder
 @Document(collection = "clients")
+@CompoundIndex(name = "activated_id", def = "{ 'Activated': 1, '_id': 1 }") // admin listing filtered by activation
 public class Client {
     @Id
     private String clientId;
+    @Indexed(unique = true, sparse = true) // findByUserCardNumber
     private String userCardNumber;
     private Boolean Activated;
 
     private String firstName;
     private String lastName;
+    @Indexed(unique = true, sparse = true) // findByPhoneNumber, phone numbers identify transfer recipients
     private String phoneNumber;
     private String email;
     private Address address;
     private String sin;
     private String dateOfBirth;
 
+    @Indexed(sparse = true) // clients pointing at an account, cleared when the account is deleted or moved
+    private String primaryAccountId; // the account opened with the profile, it cannot be deleted
+    @Indexed(sparse = true)
+    private String defaultDepositAccountId; // receives transfers by phone number and loan disbursements
+
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 }
\ No newline at end of file
@@ -0,0 +1,32 @@
+package com.birmanBank.BirmanBankBackend.models;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "daily_balances")
+@CompoundIndex(name = "account_date", def = "{ 'accountId': 1, 'date': 1 }", unique = true) // range reads
+public class DailyBalance {
+    @Id
+    private String id; // accountId:yyyy-MM-dd, so every day of an account has exactly one bucket
+
+    private String accountId;
+    private LocalDate date;
+
+    // Decimal128, so the totals can be $inc'd server-side
+    private BigDecimal openingBalance; // balance before the first transaction of the day
+    private BigDecimal closingBalance; // balance after the last transaction of the day
+    private BigDecimal totalCredits;
+    private BigDecimal totalDebits;
+    private long transactionCount;
+
+    private LocalDateTime lastTransactionAt;
+}
@@ -0,0 +1,26 @@
+package com.birmanBank.BirmanBankBackend.models;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "idempotency_keys")
+public class IdempotencyRecord {
+    @Id
+    private String requestHash; // hash of user, operation and Idempotency-Key, unique through _id
+
+    private String requestFingerprint; // hash of the request body, a reused key with another body is rejected
+
+    private String status; // IN_PROGRESS while the first request runs, COMPLETED once its response is stored
+    private LocalDateTime claimedAt; // when the running request claimed the key, a stale claim has an unknown outcome
+    private Integer statusCode; // HTTP status of the stored response
+    private Object responseBody; // body of the stored response
+
+    private LocalDateTime createdAt; // records expire a fixed time after this through a TTL index
+}
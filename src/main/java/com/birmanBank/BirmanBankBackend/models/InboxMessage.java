@@ -2,6 +2,7 @@ package com.birmanBank.BirmanBankBackend.models;
 
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -14,6 +15,7 @@ import java.time.LocalDateTime;
 public class InboxMessage {
     @Id
     private String messageId;
+    @Indexed // findByRecipientId
     private String recipientId;
     private String senderId;
     private String subject;
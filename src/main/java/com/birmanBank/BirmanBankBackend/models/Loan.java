@@ -2,6 +2,7 @@ package com.birmanBank.BirmanBankBackend.models;
 
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.math.BigDecimal;
@@ -15,9 +16,11 @@ import java.time.LocalDateTime;
 public class Loan {
     @Id
     private String loanId; // loan's unique identifier.
+    @Indexed // findByUserCardNumber
     private String userCardNumber; // account that requested the loan.
     private BigDecimal amountRequested; // amount requested.
     private BigDecimal amountOutstanding; // amount outstanding.
+    @Indexed // findByStatus
     private String status; // loan status (pending/denied/awaiting/paid/).
     private LocalDateTime loanDate; // date loan was requested.
     private LocalDateTime decidedAt; // when admin interacted with loan.
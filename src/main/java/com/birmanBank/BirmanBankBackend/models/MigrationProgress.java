@@ -0,0 +1,35 @@
+package com.birmanBank.BirmanBankBackend.models;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "migrations")
+public class MigrationProgress {
+    @Id
+    private String name;
+
+    private String status; // NOT_STARTED, RUNNING, FAILED or COMPLETED
+
+    // where a stopped migration resumes: the step, and the last _id of that step's collection it finished
+    private int step;
+    private int totalSteps;
+    private String collection;
+    private String idType;
+    private Object lastId;
+
+    private long scanned;
+    private long converted;
+    private long skipped; // values that cannot be represented as Decimal128, left unchanged
+    private String lastError;
+
+    private LocalDateTime startedAt;
+    private LocalDateTime updatedAt;
+    private LocalDateTime completedAt;
+}
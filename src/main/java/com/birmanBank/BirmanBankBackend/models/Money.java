@@ -0,0 +1,145 @@
+package com.birmanBank.BirmanBankBackend.models;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+
+/*
+ * Money is an amount in whole minor units (cents) of a currency, backed by a single long
+ * arithmetic is exact and overflow checked, and every operation that can lose a fraction of a cent
+ * takes the rounding mode it should use instead of silently keeping extra digits
+ * the services work with Money, documents and JSON keep BigDecimal and are converted at that boundary
+ */
+public record Money(long minorUnits, Currency currency) implements Comparable<Money> {
+
+    // every account of the bank is kept in Canadian dollars
+    public static final Currency CURRENCY = Currency.getInstance("CAD");
+
+    public static final Money ZERO = new Money(0, CURRENCY);
+
+    public Money {
+        if (currency == null) {
+            throw new IllegalArgumentException("Currency is required");
+        }
+    }
+
+    public static Money ofMinor(long minorUnits) {
+        return new Money(minorUnits, CURRENCY);
+    }
+
+    // converts an amount that is already a whole number of cents
+    // will throw an ArithmeticException if it has a fraction of a cent or does not fit
+    @JsonCreator
+    public static Money of(BigDecimal amount) {
+        return of(amount, RoundingMode.UNNECESSARY);
+    }
+
+    // converts any amount, rounding it to whole cents with the given mode
+    public static Money of(BigDecimal amount, RoundingMode mode) {
+        return new Money(amount.setScale(CURRENCY.getDefaultFractionDigits(), mode).unscaledValue().longValueExact(),
+                CURRENCY);
+    }
+
+    @JsonValue
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, currency.getDefaultFractionDigits());
+    }
+
+    public Money plus(Money other) {
+        checkCurrency(other);
+        return new Money(Math.addExact(minorUnits, other.minorUnits), currency);
+    }
+
+    public Money minus(Money other) {
+        checkCurrency(other);
+        return new Money(Math.subtractExact(minorUnits, other.minorUnits), currency);
+    }
+
+    public Money negate() {
+        return new Money(Math.negateExact(minorUnits), currency);
+    }
+
+    // this amount times numerator / denominator, e.g. (15, 1000) for a 1.5% fee
+    public Money multiply(long numerator, long denominator, RoundingMode mode) {
+        return new Money(divide(Math.multiplyExact(minorUnits, numerator), denominator, mode), currency);
+    }
+
+    public Money max(Money other) {
+        return compareTo(other) >= 0 ? this : other;
+    }
+
+    public boolean isPositive() {
+        return minorUnits > 0;
+    }
+
+    public boolean isZero() {
+        return minorUnits == 0;
+    }
+
+    public boolean isNegative() {
+        return minorUnits < 0;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        checkCurrency(other);
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    // plain decimal, e.g. 12.50 or -0.05
+    @Override
+    public String toString() {
+        int digits = currency.getDefaultFractionDigits();
+        if (digits == 0) {
+            return Long.toString(minorUnits);
+        }
+        String units = Long.toUnsignedString(Math.abs(minorUnits)); // unsigned, Math.abs(Long.MIN_VALUE) is negative
+        StringBuilder text = new StringBuilder(units.length() + digits + 2);
+        if (minorUnits < 0) {
+            text.append('-');
+        }
+        if (units.length() <= digits) {
+            text.append('0').append('.');
+            for (int i = units.length(); i < digits; i++) {
+                text.append('0');
+            }
+            text.append(units);
+        } else {
+            text.append(units, 0, units.length() - digits).append('.').append(units, units.length() - digits,
+                    units.length());
+        }
+        return text.toString();
+    }
+
+    private void checkCurrency(Money other) {
+        if (!currency.equals(other.currency)) {
+            throw new IllegalArgumentException("Cannot combine " + currency + " with " + other.currency);
+        }
+    }
+
+    // long division that rounds the way BigDecimal would
+    private static long divide(long dividend, long divisor, RoundingMode mode) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (remainder == 0) {
+            return quotient;
+        }
+        long signum = (dividend ^ divisor) < 0 ? -1 : 1; // sign of the exact result
+        long absRemainder = Math.abs(remainder);
+        long overHalf = absRemainder - (Math.abs(divisor) - absRemainder); // > 0 above half, 0 exactly half
+        boolean increment = switch (mode) {
+            case UNNECESSARY -> throw new ArithmeticException("Rounding necessary");
+            case DOWN -> false;
+            case UP -> true;
+            case CEILING -> signum > 0;
+            case FLOOR -> signum < 0;
+            case HALF_UP -> overHalf >= 0;
+            case HALF_DOWN -> overHalf > 0;
+            case HALF_EVEN -> overHalf > 0 || (overHalf == 0 && (quotient & 1) != 0);
+        };
+        return increment ? quotient + signum : quotient;
+    }
+}
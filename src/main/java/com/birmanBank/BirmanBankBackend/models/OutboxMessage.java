@@ -0,0 +1,36 @@
+package com.birmanBank.BirmanBankBackend.models;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "notification_outbox")
+@CompoundIndex(name = "status_next_attempt", def = "{ 'status': 1, 'nextAttemptAt': 1 }") // due messages
+@CompoundIndex(name = "status_created", def = "{ 'status': 1, 'createdAt': 1 }") // oldest pending message
+public class OutboxMessage {
+    @Id
+    private String outboxId; // also becomes the inbox message ID, so a message is never delivered twice
+
+    // the inbox message to deliver
+    private String recipientId;
+    private String senderId;
+    private String subject;
+    private String body;
+    private String targetClientId;
+
+    private String status; // HELD until its operation completed, PENDING until delivered, FAILED once it ran out of attempts
+    private String awaitedTransactionId; // a HELD message is only delivered once this transaction record exists
+    private String awaitedAccountId; // account of the awaited record, narrows the lookup in a time-series collection
+    private int attempts; // failed delivery attempts so far
+    private LocalDateTime nextAttemptAt; // not delivered before this time, pushed back after every failure
+    private String lastError;
+
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,30 @@
+package com.birmanBank.BirmanBankBackend.models;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "refresh_tokens")
+public class RefreshToken {
+    @Id
+    private String tokenHash; // SHA-256 of the opaque token, the token itself is never stored
+
+    @Indexed // revoke every refresh token of a user
+    private String cardNumber;
+
+    // what the access token needs, captured at login so a refresh does not read users or clients
+    private String role;
+    private Boolean activated;
+    private Long epoch; // the refresh token is only honoured while the user's epoch is unchanged
+
+    private LocalDateTime createdAt;
+    @Indexed(expireAfter = "0s") // removed by MongoDB once expired
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,22 @@
+package com.birmanBank.BirmanBankBackend.models;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "revoked_users")
+public class RevokedUser {
+    @Id
+    private String cardNumber; // a deleted user, every instance rejects its tokens while this record exists
+
+    // access tokens live 30 minutes and refresh tokens are deleted with the user, a day outlives both
+    @Indexed(expireAfter = "1d")
+    private LocalDateTime revokedAt;
+}
@@ -1,16 +1,22 @@
 package com.birmanBank.BirmanBankBackend.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 @Document(collection = "transactions")
+@CompoundIndex(name = "account_timestamp_id", def = "{ 'accountId': 1, 'timestamp': -1, '_id': -1 }") // history paging
+@CompoundIndex(name = "timestamp_id", def = "{ 'timestamp': -1, '_id': -1 }") // admin listing across all accounts
 public class Transaction {
     @Id
     private String transactionId; // Unique primary key for each transaction
@@ -29,5 +35,29 @@ public class Transaction {
     private String transferToAccountId;
     private String recipientPhoneNumber;  
 
+    // the description is stored as a TransactionDescription code and its parameters under short keys,
+    // older transactions still hold the rendered text in description
     private String description;
-}
\ No newline at end of file
+    @JsonIgnore
+    @Field("dc")
+    private String descriptionCode;
+    @JsonIgnore
+    @Field("dp")
+    private List<String> descriptionParams;
+
+    // rendered when the transaction is serialized or exported, nothing rendered is stored
+    public String getDescription() {
+        if (description == null && descriptionCode != null) {
+            return TransactionDescription.render(this);
+        }
+        return description;
+    }
+
+    public static class TransactionBuilder {
+        public TransactionBuilder describedAs(TransactionDescription description, String... params) {
+            this.descriptionCode = description.getCode();
+            this.descriptionParams = params.length == 0 ? null : List.of(params);
+            return this;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.birmanBank.BirmanBankBackend.models;
+
+import java.util.List;
+
+/*
+ * the description templates of transaction records
+ * a transaction stores the short code and the parameters, the text is only rendered when it is shown or exported
+ * {0}, {1}, ... are the stored parameters, {transferToAccountId} and {recipientPhoneNumber} are read from the
+ * transaction itself so values it already holds are not stored twice
+ * codes are persisted, so an existing code must never be renamed or given a different meaning
+ */
+public enum TransactionDescription {
+    DEPOSIT("DP", "Deposit"),
+    TRANSFER_TO("TT", "Transfer to {recipientPhoneNumber}"),
+    TRANSFER_FROM_CLIENT("TF", "Transfer received from client {0}"),
+    INTERNAL_TRANSFER_TO("IT", "Internal transfer to account {transferToAccountId}"),
+    INTERNAL_TRANSFER_TO_WITH_FEE("IF", "Internal transfer to account {transferToAccountId} (Fee: {0})"),
+    INTERNAL_TRANSFER_FROM("IR", "Internal transfer from account {0}"),
+    LOAN_DISBURSED("LD", "Loan approved and disbursed"),
+    LOAN_REPAYMENT("LR", "Loan repayment");
+
+    private final String code;
+    private final String template;
+
+    TransactionDescription(String code, String template) {
+        this.code = code;
+        this.template = template;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    // the text of a transaction's stored code, an unknown code (written by a newer version) is shown as is
+    public static String render(Transaction transaction) {
+        for (TransactionDescription description : values()) {
+            if (description.code.equals(transaction.getDescriptionCode())) {
+                return description.fill(transaction);
+            }
+        }
+        return transaction.getDescriptionCode();
+    }
+
+    private String fill(Transaction transaction) {
+        String text = template
+                .replace("{transferToAccountId}", orEmpty(transaction.getTransferToAccountId()))
+                .replace("{recipientPhoneNumber}", orEmpty(transaction.getRecipientPhoneNumber()));
+        List<String> params = transaction.getDescriptionParams();
+        for (int i = 0; text.contains("{" + i + "}"); i++) {
+            text = text.replace("{" + i + "}", params != null && i < params.size() ? orEmpty(params.get(i)) : "");
+        }
+        return text;
+    }
+
+    private static String orEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
@@ -2,6 +2,8 @@ package com.birmanBank.BirmanBankBackend.models;
 
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -11,12 +13,20 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @Builder
 @Document(collection = "users")
+@CompoundIndex(name = "role_id", def = "{ 'role': 1, '_id': 1 }") // admin listing filtered by role
 public class User {
     @Id
     private String cardNumber; //unique identifier used for login
     private String password;  
     private String role; //admin or client
 
+    //revocation epoch, tokens issued with an older epoch are rejected
+    //only stored once it has been bumped
+    private Long tokenEpoch;
+    //when the epoch was last bumped, the refresh of the epoch table only reads users bumped since its last run
+    @Indexed(sparse = true)
+    private LocalDateTime epochChangedAt;
+
     //audit fields
     //log time for admin side and client side reasons
     private LocalDateTime createdAt;
@@ -1,17 +1,29 @@
 package com.birmanBank.BirmanBankBackend.repositories;
 
+import org.springframework.data.mongodb.repository.Meta;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 
 import com.birmanBank.BirmanBankBackend.models.Account;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
-public interface AccountRepository extends MongoRepository<Account, String> {
+public interface AccountRepository extends MongoRepository<Account, String>, AccountRepositoryCustom {
     // retrieve all accounts for a specific client (one-to-many relationship)
     // will return a list of accounts associated with the given client ID
     List<Account> findByClientId(String clientId);
 
+    long countByClientId(String clientId);
+
+    // retrieve the accounts of many clients with a single $in query
+    List<Account> findByClientIdIn(Collection<String> clientIds);
+
+    // cursor backed stream over every account, for jobs that walk the whole collection
+    @Meta(cursorBatchSize = 500)
+    Stream<Account> streamAllBy();
+
     // custom query to find an account by the client's phone number
     @Query("{ 'client.phoneNumber': ?0 }")
     List<Account> findByClientPhoneNumber(String phoneNumber);
@@ -0,0 +1,27 @@
+package com.birmanBank.BirmanBankBackend.repositories;
+
+import com.birmanBank.BirmanBankBackend.models.Account;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.Optional;
+
+/*
+ * server-side balance mutations for accounts
+ * each method is a single findAndModify round trip that only touches the balance fields
+ * and returns the account as it looks after the update
+ * balances still stored as strings are converted to Decimal128 first, so $inc and the debit guard apply to them
+ */
+public interface AccountRepositoryCustom {
+    // atomically adds the amount to the balance
+    // will return an empty Optional if the account does not exist
+    Optional<Account> creditBalance(String accountId, BigDecimal amount);
+
+    // atomically subtracts the amount from the balance, guarded by balance >= amount
+    // will return an empty Optional if the account does not exist or the balance is insufficient
+    Optional<Account> debitBalance(String accountId, BigDecimal amount);
+
+    // adds the amounts to many balances in one unordered bulk write
+    // will return the number of accounts that were matched, a write error undoes the credits that landed and is rethrown
+    int creditBalances(Map<String, BigDecimal> amountsByAccountId);
+}
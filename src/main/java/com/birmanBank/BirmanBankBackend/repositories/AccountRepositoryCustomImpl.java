@@ -0,0 +1,107 @@
+package com.birmanBank.BirmanBankBackend.repositories;
+
+import com.birmanBank.BirmanBankBackend.models.Account;
+import com.birmanBank.BirmanBankBackend.utils.LegacyDecimals;
+
+import com.mongodb.bulk.BulkWriteError;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+public class AccountRepositoryCustomImpl implements AccountRepositoryCustom {
+
+    // return the post-update document so callers get the new balance without a second read
+    private static final FindAndModifyOptions RETURN_NEW = FindAndModifyOptions.options().returnNew(true);
+
+    private final MongoTemplate mongoTemplate;
+
+    public AccountRepositoryCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public Optional<Account> creditBalance(String accountId, BigDecimal amount) {
+        Query query = Query.query(Criteria.where("accountId").is(accountId));
+        try {
+            return Optional.ofNullable(
+                    mongoTemplate.findAndModify(query, balanceChange(amount), RETURN_NEW, Account.class));
+        } catch (DataAccessException e) {
+            // $inc on a balance still stored as a string is rejected by the server
+            if (!convertStringBalances(List.of(accountId))) {
+                throw e;
+            }
+            return Optional.ofNullable(
+                    mongoTemplate.findAndModify(query, balanceChange(amount), RETURN_NEW, Account.class));
+        }
+    }
+
+    @Override
+    public Optional<Account> debitBalance(String accountId, BigDecimal amount) {
+        // the balance guard is part of the match, so a concurrent debit can never overdraw the account
+        Query query = Query.query(Criteria.where("accountId").is(accountId).and("balance").gte(amount));
+        Account debited = mongoTemplate.findAndModify(query, balanceChange(amount.negate()), RETURN_NEW, Account.class);
+        // a balance still stored as a string never matches gte, convert it and try once more
+        if (debited == null && convertStringBalances(List.of(accountId))) {
+            debited = mongoTemplate.findAndModify(query, balanceChange(amount.negate()), RETURN_NEW, Account.class);
+        }
+        return Optional.ofNullable(debited);
+    }
+
+    @Override
+    public int creditBalances(Map<String, BigDecimal> amountsByAccountId) {
+        if (amountsByAccountId.isEmpty()) {
+            return 0;
+        }
+        // one indexed lookup, string balances would fail their $inc inside the bulk write
+        convertStringBalances(amountsByAccountId.keySet());
+        List<Map.Entry<String, BigDecimal>> credits = List.copyOf(amountsByAccountId.entrySet());
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Account.class);
+        credits.forEach(credit -> bulk.updateOne(
+                Query.query(Criteria.where("accountId").is(credit.getKey())), balanceChange(credit.getValue())));
+        try {
+            return bulk.execute().getMatchedCount();
+        } catch (BulkOperationException e) {
+            // take back the credits that did land, so a failed bulk write moves no money at all
+            Set<Integer> failed = e.getErrors().stream().map(BulkWriteError::getIndex).collect(Collectors.toSet());
+            BulkOperations undo = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Account.class);
+            boolean landed = false;
+            for (int i = 0; i < credits.size(); i++) {
+                if (!failed.contains(i)) {
+                    undo.updateOne(Query.query(Criteria.where("accountId").is(credits.get(i).getKey())),
+                            balanceChange(credits.get(i).getValue().negate()));
+                    landed = true;
+                }
+            }
+            if (landed) {
+                undo.execute();
+            }
+            throw e;
+        }
+    }
+
+    private boolean convertStringBalances(Collection<String> accountIds) {
+        return LegacyDecimals.convertStrings(mongoTemplate, Account.class, Criteria.where("accountId").in(accountIds),
+                "balance");
+    }
+
+    // $inc the balance and stamp the modification time, nothing else is written
+    private Update balanceChange(BigDecimal delta) {
+        return new Update()
+                .inc("balance", delta)
+                .set("updatedAt", LocalDateTime.now());
+    }
+}
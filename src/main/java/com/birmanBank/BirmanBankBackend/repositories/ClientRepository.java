@@ -1,9 +1,12 @@
 package com.birmanBank.BirmanBankBackend.repositories;
 
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 
 import com.birmanBank.BirmanBankBackend.models.Client;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface ClientRepository extends MongoRepository<Client, String> {
@@ -11,5 +14,12 @@ public interface ClientRepository extends MongoRepository<Client, String> {
     //will return an Optional<Client> object, which may or may not contain a Client object
     Optional<Client> findByUserCardNumber(String userCardNumber);
 
+    // only the fields the session summary shows, served by the userCardNumber index
+    @Query(value = "{ 'userCardNumber': ?0 }", fields = "{ 'userCardNumber': 1, 'firstName': 1, 'Activated': 1 }")
+    Optional<Client> findSessionSummaryByUserCardNumber(String userCardNumber);
+
     Optional<Client> findByPhoneNumber(String phoneNumber);
+
+    // find the clients for many phone numbers with a single $in query
+    List<Client> findByPhoneNumberIn(Collection<String> phoneNumbers);
 }
\ No newline at end of file
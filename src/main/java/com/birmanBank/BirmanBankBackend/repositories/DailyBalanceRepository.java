@@ -0,0 +1,23 @@
+package com.birmanBank.BirmanBankBackend.repositories;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Range;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import com.birmanBank.BirmanBankBackend.models.DailyBalance;
+
+public interface DailyBalanceRepository extends MongoRepository<DailyBalance, String> {
+    // the buckets of an account inside an inclusive date range, oldest first
+    List<DailyBalance> findByAccountIdAndDateBetweenOrderByDateAsc(String accountId, Range<LocalDate> dates);
+
+    // the last bucket before a date, its closing balance is the opening balance of a range starting on that date
+    Optional<DailyBalance> findFirstByAccountIdAndDateLessThanOrderByDateDesc(String accountId, LocalDate date);
+
+    // the first bucket after a date, used when a range has no activity of its own
+    Optional<DailyBalance> findFirstByAccountIdAndDateGreaterThanOrderByDateAsc(String accountId, LocalDate date);
+
+    void deleteByAccountId(String accountId);
+}
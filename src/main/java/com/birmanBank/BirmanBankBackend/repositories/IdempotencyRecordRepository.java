@@ -0,0 +1,7 @@
+package com.birmanBank.BirmanBankBackend.repositories;
+
+import com.birmanBank.BirmanBankBackend.models.IdempotencyRecord;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface IdempotencyRecordRepository extends MongoRepository<IdempotencyRecord, String> {
+}
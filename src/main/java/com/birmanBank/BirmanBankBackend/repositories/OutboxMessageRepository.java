@@ -0,0 +1,23 @@
+package com.birmanBank.BirmanBankBackend.repositories;
+
+import com.birmanBank.BirmanBankBackend.models.OutboxMessage;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface OutboxMessageRepository extends MongoRepository<OutboxMessage, String> {
+    // messages of the given status that are due for delivery, oldest first
+    List<OutboxMessage> findByStatusAndNextAttemptAtLessThanEqualOrderByNextAttemptAtAsc(String status,
+            LocalDateTime now, Pageable pageable);
+
+    // oldest message of the given status, used to measure dispatch lag
+    Optional<OutboxMessage> findFirstByStatusOrderByCreatedAtAsc(String status);
+
+    // messages of the given status created before the given time, used to settle HELD messages of crashed requests
+    List<OutboxMessage> findByStatusAndCreatedAtLessThan(String status, LocalDateTime createdBefore, Pageable pageable);
+
+    long countByStatus(String status);
+}
@@ -0,0 +1,10 @@
+package com.birmanBank.BirmanBankBackend.repositories;
+
+import com.birmanBank.BirmanBankBackend.models.RefreshToken;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface RefreshTokenRepository extends MongoRepository<RefreshToken, String> {
+    // removes every refresh token of a user, served by the cardNumber index
+    // will return the number of tokens that were removed
+    long deleteByCardNumber(String cardNumber);
+}
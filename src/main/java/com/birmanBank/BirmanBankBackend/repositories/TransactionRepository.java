@@ -1,10 +1,15 @@
 package com.birmanBank.BirmanBankBackend.repositories;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.Meta;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 
 import com.birmanBank.BirmanBankBackend.models.Transaction;
 
@@ -16,4 +21,30 @@ public interface TransactionRepository extends MongoRepository<Transaction, Stri
     Page<Transaction> findByAccountIdAndTimestampBetween(String accountId, LocalDateTime startDate,
             LocalDateTime endDate, Pageable pageable);
 
+    // keyset pagination - newest first, ordered by (timestamp, _id) and served by the matching compound index
+    // first page of an account
+    List<Transaction> findByAccountIdOrderByTimestampDescTransactionIdDesc(String accountId, Pageable pageable);
+
+    // every page after the first, starting right after the (timestamp, _id) position of the cursor
+    @Query(value = "{ 'accountId': ?0, '$or': [ { 'timestamp': { '$lt': ?1 } }, { 'timestamp': ?1, '_id': { '$lt': ?2 } } ] }",
+            sort = "{ 'timestamp': -1, '_id': -1 }")
+    List<Transaction> findPageBefore(String accountId, LocalDateTime timestamp, String transactionId,
+            Pageable pageable);
+
+    long countByAccountId(String accountId);
+
+    // a time-series collection has no _id index, the time window lets MongoDB skip every other bucket
+    Optional<Transaction> findByTransactionIdAndTimestampBetween(String transactionId, LocalDateTime startDate,
+            LocalDateTime endDate);
+
+    // the same lookup when the account is known too, the account is the time-series metaField
+    boolean existsByAccountIdAndTransactionIdAndTimestampBetween(String accountId, String transactionId,
+            LocalDateTime startDate, LocalDateTime endDate);
+
+    // cursor backed stream of an account's transactions in a date range, oldest first
+    // rows are fetched from the server in batches while the stream is consumed, never all at once
+    @Meta(cursorBatchSize = 1000)
+    Stream<Transaction> streamByAccountIdAndTimestampBetweenOrderByTimestampAsc(String accountId,
+            LocalDateTime startDate, LocalDateTime endDate);
+
 }
\ No newline at end of file
@@ -0,0 +1,8 @@
+package com.birmanBank.BirmanBankBackend.services;
+
+/*
+ * published whenever an account is changed as a whole document or deleted
+ * listeners drop anything they cached about that account
+ */
+public record AccountChangedEvent(String accountId) {
+}
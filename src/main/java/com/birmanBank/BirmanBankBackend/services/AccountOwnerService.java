@@ -0,0 +1,82 @@
+package com.birmanBank.BirmanBankBackend.services;
+
+import com.birmanBank.BirmanBankBackend.models.Account;
+import com.birmanBank.BirmanBankBackend.models.Client;
+import com.birmanBank.BirmanBankBackend.utils.IndexedLruCache;
+import com.birmanBank.BirmanBankBackend.utils.LruCache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+
+/*
+ * AccountOwnerService remembers which user card number owns each account
+ * the owner is looked up once (the account, then its client) and kept until the account is changed or deleted,
+ * so the ownership check of the account endpoints needs no database call after the first request
+ * the time to live bounds how long another instance may keep an owner after a change it was not told about
+ * the cache is also indexed by owner, so a changed user only drops its own accounts
+ */
+
+@Service
+public class AccountOwnerService {
+
+    //-----------------------Constructors----------------------//
+    private final RequestIdentityMap requestIdentityMap;
+    private final IndexedLruCache<String, String> owners;
+    private final IndexedLruCache.Index<String, String> byOwner;
+
+    public AccountOwnerService(RequestIdentityMap requestIdentityMap,
+            @Value("${bank.accounts.owner-cache-size:100000}") int cacheSize,
+            @Value("${bank.accounts.owner-cache-ttl:10m}") Duration cacheTtl) {
+        this.requestIdentityMap = requestIdentityMap;
+        this.owners = new IndexedLruCache<>(cacheSize, cacheTtl);
+        this.byOwner = owners.addIndex(owner -> owner);
+    }
+    //---------------------------------------------------------------//
+
+    // the card number of the user owning the account, 404 when the account or its client does not exist
+    public String getOwnerCardNumber(String accountId) {
+        String owner = owners.get(accountId);
+        if (owner == null) {
+            owner = loadOwnerCardNumber(accountId);
+            owners.put(accountId, owner);
+        }
+        return owner;
+    }
+
+    @EventListener
+    public void onAccountChanged(AccountChangedEvent event) {
+        owners.remove(event.accountId());
+    }
+
+    // a client's card number may be changed by an admin, its accounts are looked up again
+    // a new user owns nothing that could be cached yet
+    @EventListener
+    public void onUserChanged(UserChangedEvent event) {
+        if (!event.created()) {
+            owners.removeAll(byOwner, event.cardNumber());
+        }
+    }
+
+    public LruCache.Stats getStats() {
+        return owners.getStats();
+    }
+
+    private String loadOwnerCardNumber(String accountId) {
+        Account account = requestIdentityMap.findAccount(accountId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Account not found"));
+
+        Client client = requestIdentityMap.findClient(account.getClientId())
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        "Client associated with account not found"));
+
+        if (client.getUserCardNumber() == null) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Account does not belong to the authenticated user");
+        }
+        return client.getUserCardNumber();
+    }
+}
@@ -0,0 +1,328 @@
+package com.birmanBank.BirmanBankBackend.services;
+
+import com.birmanBank.BirmanBankBackend.dto.CursorPage;
+import com.birmanBank.BirmanBankBackend.models.Account;
+import com.birmanBank.BirmanBankBackend.models.Client;
+import com.birmanBank.BirmanBankBackend.models.Transaction;
+import com.birmanBank.BirmanBankBackend.models.User;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * AdminListingService pages through whole collections for the admin screens without loading them into memory
+ * pages are keyset pages: the cursor is the sort position of the last row, so a deep page costs the same index seek
+ * as the first one, and no total is counted
+ * filters and field selections are applied by MongoDB, only the selected fields of one page leave the database
+ * _id values of different types (numbers, strings, ObjectIds) are paged through in BSON order, one type after another,
+ * since $gt and $lt only compare values of the same type
+ * the streamed variant writes every matching row as NDJSON straight from one cursor, in no particular order
+ */
+
+@Service
+public class AdminListingService {
+
+    private static final int MAX_PAGE_SIZE = 100;
+
+    // _id types in BSON sort order, with their $type alias
+    private static final List<String> ID_TYPES = List.of("number", "string", "objectId");
+
+    // what can be listed, filtered on and selected, API names mapped to the stored fields they need
+    // only the listed fields are ever returned, so password hashes never leave the database
+    public enum Listing {
+        USERS("users", User.class, "_id", false, "createdAt",
+                Map.of("role", "role"),
+                fields("cardNumber", "_id", "role", "role", "tokenEpoch", "tokenEpoch",
+                        "createdAt", "createdAt", "updatedAt", "updatedAt")),
+        CLIENTS("clients", Client.class, "_id", false, "createdAt",
+                Map.of("activated", "Activated"),
+                fields("clientId", "_id", "userCardNumber", "userCardNumber", "activated", "Activated",
+                        "firstName", "firstName", "lastName", "lastName", "phoneNumber", "phoneNumber",
+                        "email", "email", "address", "address", "sin", "sin", "dateOfBirth", "dateOfBirth",
+                        "primaryAccountId", "primaryAccountId", "defaultDepositAccountId", "defaultDepositAccountId",
+                        "createdAt", "createdAt", "updatedAt", "updatedAt")),
+        ACCOUNTS("accounts", Account.class, "_id", false, "createdAt",
+                Map.of("clientId", "clientId", "accountType", "accountType", "status", "status"),
+                fields("accountId", "_id", "clientId", "clientId", "accountName", "accountName",
+                        "accountType", "accountType", "balance", "balance", "status", "status",
+                        "createdAt", "createdAt", "updatedAt", "updatedAt")),
+        // newest first, the description is rendered from its code, parameters and the transfer fields
+        TRANSACTIONS("transactions", Transaction.class, "timestamp", true, "timestamp",
+                Map.of("accountId", "accountId", "transactionType", "transactionType"),
+                fields("transactionId", "_id", "accountId", "accountId", "transactionType", "transactionType",
+                        "transactionAmount", "transactionAmount", "postTransactionBalance", "postTransactionBalance",
+                        "timestamp", "timestamp", "transferToAccountId", "transferToAccountId",
+                        "recipientPhoneNumber", "recipientPhoneNumber",
+                        "description", "description,dc,dp,transferToAccountId,recipientPhoneNumber"));
+
+        private final String collection;
+        private final Class<?> type;
+        private final String sortField; // _id alone, or a field with _id breaking ties
+        private final boolean descending;
+        private final String dateField;
+        private final Map<String, String> filters;
+        private final Map<String, List<String>> fields;
+
+        Listing(String collection, Class<?> type, String sortField, boolean descending, String dateField,
+                Map<String, String> filters, Map<String, List<String>> fields) {
+            this.collection = collection;
+            this.type = type;
+            this.sortField = sortField;
+            this.descending = descending;
+            this.dateField = dateField;
+            this.filters = filters;
+            this.fields = fields;
+        }
+
+        // pairs of API name and comma separated stored fields
+        private static Map<String, List<String>> fields(String... pairs) {
+            Map<String, List<String>> fields = new LinkedHashMap<>();
+            for (int i = 0; i < pairs.length; i += 2) {
+                fields.put(pairs[i], List.of(pairs[i + 1].split(",")));
+            }
+            return fields;
+        }
+    }
+
+    // server-side filters of a listing, null values are left out
+    public static class Filter {
+        private final Map<String, Object> values = new LinkedHashMap<>();
+        private LocalDateTime from;
+        private LocalDateTime to;
+
+        public Filter with(String name, Object value) {
+            if (value != null) {
+                values.put(name, value);
+            }
+            return this;
+        }
+
+        // from inclusive, to exclusive, either may be open
+        public Filter between(LocalDateTime from, LocalDateTime to) {
+            this.from = from;
+            this.to = to;
+            return this;
+        }
+    }
+
+    // where the previous page stopped
+    private record Position(Object sortValue, int idType, Object id) {
+    }
+
+    //-----------------------Constructors----------------------//
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+
+    public AdminListingService(MongoTemplate mongoTemplate, ObjectMapper objectMapper) {
+        this.mongoTemplate = mongoTemplate;
+        this.objectMapper = objectMapper;
+    }
+    //---------------------------------------------------------------//
+
+    // one page of a listing, pass the nextCursor of a page to get the next one
+    // fields is a comma separated selection of the listing's fields, all of them when empty
+    public CursorPage<ObjectNode> list(Listing listing, Filter filter, String fields, String cursor, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        Set<String> selected = selectedFields(listing, fields);
+        Bson match = match(listing, filter);
+        if (cursor != null && !cursor.isEmpty()) {
+            match = Filters.and(match, after(listing, decodeCursor(listing, cursor)));
+        }
+
+        // fetch one extra row to know whether there is a next page
+        Set<String> stored = storedFields(listing, selected);
+        stored.add(listing.sortField);
+        String sortField = listing.sortField;
+        List<String> sort = "_id".equals(sortField) ? List.of("_id") : List.of(sortField, "_id");
+        List<Document> documents = mongoTemplate.getCollection(listing.collection)
+                .find(match)
+                .projection(Projections.include(new ArrayList<>(stored)))
+                .sort(listing.descending ? Sorts.descending(sort) : Sorts.ascending(sort))
+                .limit(size + 1)
+                .into(new ArrayList<>(size + 1));
+
+        boolean hasMore = documents.size() > size;
+        List<Document> page = hasMore ? documents.subList(0, size) : documents;
+        List<ObjectNode> content = new ArrayList<>(page.size());
+        page.forEach(document -> content.add(row(listing, document, selected)));
+        String nextCursor = hasMore ? encodeCursor(listing, page.get(page.size() - 1)) : null;
+        return new CursorPage<>(content, nextCursor, hasMore, null);
+    }
+
+    // every row of a listing as NDJSON, the cursor is only opened once the body is written
+    public StreamingResponseBody stream(Listing listing, Filter filter, String fields) {
+        Set<String> selected = selectedFields(listing, fields);
+        Bson match = match(listing, filter);
+        List<String> stored = new ArrayList<>(storedFields(listing, selected));
+        return outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            try (MongoCursor<Document> documents = mongoTemplate.getCollection(listing.collection)
+                    .find(match)
+                    .projection(Projections.include(stored))
+                    .iterator()) {
+                while (documents.hasNext()) {
+                    writer.write(objectMapper.writeValueAsString(row(listing, documents.next(), selected)));
+                    writer.write('\n');
+                }
+            }
+            writer.flush();
+        };
+    }
+
+    // the document as the API shows it, reduced to the selected fields
+    private ObjectNode row(Listing listing, Document document, Set<String> selected) {
+        ObjectNode row = objectMapper.valueToTree(mongoTemplate.getConverter().read(listing.type, document));
+        row.retain(selected);
+        return row;
+    }
+
+    private Set<String> selectedFields(Listing listing, String fields) {
+        if (fields == null || fields.isBlank()) {
+            return listing.fields.keySet();
+        }
+        Set<String> selected = new LinkedHashSet<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (!listing.fields.containsKey(name)) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown field: " + name);
+            }
+            selected.add(name);
+        }
+        return selected;
+    }
+
+    private Set<String> storedFields(Listing listing, Set<String> selected) {
+        Set<String> stored = new LinkedHashSet<>();
+        stored.add("_id");
+        selected.forEach(field -> stored.addAll(listing.fields.get(field)));
+        return stored;
+    }
+
+    private Bson match(Listing listing, Filter filter) {
+        List<Bson> conditions = new ArrayList<>();
+        filter.values.forEach((name, value) -> {
+            String field = listing.filters.get(name);
+            if (field == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown filter: " + name);
+            }
+            conditions.add(Filters.eq(field, value));
+        });
+        if (filter.from != null && filter.to != null && !filter.from.isBefore(filter.to)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Start date must be before end date");
+        }
+        if (filter.from != null) {
+            conditions.add(Filters.gte(listing.dateField, toDate(filter.from)));
+        }
+        if (filter.to != null) {
+            conditions.add(Filters.lt(listing.dateField, toDate(filter.to)));
+        }
+        return conditions.isEmpty() ? new Document() : Filters.and(conditions);
+    }
+
+    // rows after the position in sort order: a later sort value, or the same one with a later _id
+    private Bson after(Listing listing, Position position) {
+        Bson idAfter = idAfter(listing, position);
+        if ("_id".equals(listing.sortField)) {
+            return idAfter;
+        }
+        return Filters.or(
+                listing.descending
+                        ? Filters.lt(listing.sortField, position.sortValue())
+                        : Filters.gt(listing.sortField, position.sortValue()),
+                Filters.and(Filters.eq(listing.sortField, position.sortValue()), idAfter));
+    }
+
+    // a later _id of the same type, or any _id of a type that comes later in sort order
+    private Bson idAfter(Listing listing, Position position) {
+        Bson sameType = listing.descending
+                ? Filters.lt("_id", position.id())
+                : Filters.gt("_id", position.id());
+        List<String> laterTypes = listing.descending
+                ? ID_TYPES.subList(0, position.idType())
+                : ID_TYPES.subList(position.idType() + 1, ID_TYPES.size());
+        if (laterTypes.isEmpty()) {
+            return sameType;
+        }
+        List<Bson> clauses = new ArrayList<>();
+        clauses.add(sameType);
+        laterTypes.forEach(type -> clauses.add(Filters.type("_id", type)));
+        return Filters.or(clauses);
+    }
+
+    // the cursor is the (sort value, _id type, _id) of the last row of a page, base64 encoded
+    private String encodeCursor(Listing listing, Document last) {
+        Object id = last.get("_id");
+        String sortValue = "_id".equals(listing.sortField) ? ""
+                : Long.toString(((Date) last.get(listing.sortField)).getTime());
+        String position = sortValue + "|" + idTypeOf(id) + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Position decodeCursor(Listing listing, String cursor) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] position = decoded.split("\\|", 3);
+            if (position.length != 3) {
+                throw new IllegalArgumentException("Incomplete cursor");
+            }
+            Object sortValue = "_id".equals(listing.sortField) ? null : new Date(Long.parseLong(position[0]));
+            int idType = Integer.parseInt(position[1]);
+            Object id = switch (ID_TYPES.get(idType)) {
+                case "number" -> position[2].contains(".") ? Double.parseDouble(position[2])
+                        : Long.parseLong(position[2]);
+                case "objectId" -> new ObjectId(position[2]);
+                default -> position[2];
+            };
+            return new Position(sortValue, idType, id);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+    }
+
+    private int idTypeOf(Object id) {
+        if (id instanceof Number) {
+            return ID_TYPES.indexOf("number");
+        }
+        if (id instanceof ObjectId) {
+            return ID_TYPES.indexOf("objectId");
+        }
+        if (id instanceof String) {
+            return ID_TYPES.indexOf("string");
+        }
+        throw new IllegalStateException("Unsupported _id type: " + id.getClass().getSimpleName());
+    }
+
+    private Date toDate(LocalDateTime time) {
+        return Date.from(time.atZone(ZoneId.systemDefault()).toInstant());
+    }
+}
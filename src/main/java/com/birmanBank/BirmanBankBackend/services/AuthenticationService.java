@@ -1,41 +1,63 @@
 package com.birmanBank.BirmanBankBackend.services;
 
-import com.birmanBank.BirmanBankBackend.models.Account;
 import com.birmanBank.BirmanBankBackend.models.Client;
 import com.birmanBank.BirmanBankBackend.models.User;
-import com.birmanBank.BirmanBankBackend.repositories.AccountRepository;
 import com.birmanBank.BirmanBankBackend.repositories.ClientRepository;
 import com.birmanBank.BirmanBankBackend.repositories.UserRepository;
 import com.birmanBank.BirmanBankBackend.utils.JwtUtil;
+import com.birmanBank.BirmanBankBackend.utils.LruCache;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import com.birmanBank.BirmanBankBackend.utils.ValidationUtil;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
 @Service
-public class AuthenticationService implements UserDetailsService {
+public class AuthenticationService implements UserDetailsService, UserDetailsPasswordService {
 
     private final UserRepository userRepository;
-    private final AccountRepository accountRepository;
+    private final AccountOwnerService accountOwnerService;
     private final ClientRepository clientRepository;
     private final JwtUtil jwtUtil;
-
-    public AuthenticationService(UserRepository userRepository, AccountRepository accountRepository,
-            ClientRepository clientRepository, JwtUtil jwtUtil) {
+    private final TokenEpochService tokenEpochService;
+    private final RefreshTokenService refreshTokenService;
+    private final RequestIdentityMap requestIdentityMap;
+    private final LruCache<String, UserSnapshot> userDetailsCache;
+
+    public AuthenticationService(UserRepository userRepository, AccountOwnerService accountOwnerService,
+            ClientRepository clientRepository, JwtUtil jwtUtil, TokenEpochService tokenEpochService,
+            RefreshTokenService refreshTokenService, RequestIdentityMap requestIdentityMap,
+            @Value("${bank.auth.user-cache-size:10000}") int userCacheSize,
+            @Value("${bank.auth.user-cache-ttl:5m}") Duration userCacheTtl) {
         this.userRepository = userRepository;
-        this.accountRepository = accountRepository;
+        this.accountOwnerService = accountOwnerService;
         this.clientRepository = clientRepository;
         this.jwtUtil = jwtUtil;
+        this.tokenEpochService = tokenEpochService;
+        this.refreshTokenService = refreshTokenService;
+        this.requestIdentityMap = requestIdentityMap;
+        this.userDetailsCache = new LruCache<>(userCacheSize, userCacheTtl);
+    }
+
+    // what loadUserByUsername needs to rebuild a user, kept instead of the UserDetails itself
+    // spring security erases the password of the UserDetails it authenticates, so every caller gets a fresh copy
+    private record UserSnapshot(String cardNumber, String password, String role, Boolean activated) {
     }
 
     public boolean isPhoneNumberUnique(String phoneNumber) {
@@ -46,13 +68,13 @@ public class AuthenticationService implements UserDetailsService {
 
     public User getClientByCardNumber(String cardNumber) {
         ValidationUtil.validateCardNumber(cardNumber);
-        return userRepository.findByCardNumber(cardNumber)
+        return requestIdentityMap.findUser(cardNumber)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found"));
     }
 
     public Client getClientByUserCardNumber(String cardNumber) {
         ValidationUtil.validateCardNumber(cardNumber);
-        return clientRepository.findByUserCardNumber(cardNumber)
+        return requestIdentityMap.findClientByUserCardNumber(cardNumber)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Client not found"));
     }
 
@@ -60,58 +82,111 @@ public class AuthenticationService implements UserDetailsService {
         return "ADMIN".equalsIgnoreCase(user.getRole());
     }
 
+    // served from the user details cache, entries are dropped when the user or its client changes
     @Override
     public UserDetails loadUserByUsername(String cardNumber) throws UsernameNotFoundException {
         ValidationUtil.validateCardNumber(cardNumber);
-        User appUser = userRepository.findByCardNumber(cardNumber)
-                .orElseThrow(() -> new UsernameNotFoundException("User not found with card number: " + cardNumber));
+        UserSnapshot snapshot = userDetailsCache.get(cardNumber);
+        if (snapshot == null) {
+            snapshot = loadSnapshot(cardNumber);
+            userDetailsCache.put(cardNumber, snapshot);
+        }
 
-        List<GrantedAuthority> authorities = new ArrayList<>();
+        return new org.springframework.security.core.userdetails.User(
+                snapshot.cardNumber(),
+                snapshot.password(),
+                buildAuthorities(snapshot.role(), snapshot.activated()));
+    }
 
-        if (appUser.getRole() != null && !appUser.getRole().isEmpty()) {
-            authorities.add(new SimpleGrantedAuthority("ROLE_" + appUser.getRole().toUpperCase()));
-        }
+    // called by spring security after a successful login when the stored hash uses a lower BCrypt cost
+    // than the configured one, the password has already been hashed again with the current cost
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        userRepository.findByCardNumber(user.getUsername()).ifPresent(appUser -> {
+            appUser.setPassword(newPassword);
+            appUser.setUpdatedAt(LocalDateTime.now());
+            userRepository.save(appUser);
+        });
+        userDetailsCache.remove(user.getUsername());
+        return org.springframework.security.core.userdetails.User.withUserDetails(user)
+                .password(newPassword)
+                .build();
+    }
+
+    @EventListener
+    public void onUserChanged(UserChangedEvent event) {
+        userDetailsCache.remove(event.cardNumber());
+    }
 
+    public LruCache.Stats getUserDetailsCacheStats() {
+        return userDetailsCache.getStats();
+    }
+
+    private UserSnapshot loadSnapshot(String cardNumber) {
+        User appUser = userRepository.findByCardNumber(cardNumber)
+                .orElseThrow(() -> new UsernameNotFoundException("User not found with card number: " + cardNumber));
+
+        Boolean activated = null;
         if ("CLIENT".equalsIgnoreCase(appUser.getRole())) {
             Client client = clientRepository.findByUserCardNumber(appUser.getCardNumber())
                     .orElseThrow(() -> new UsernameNotFoundException(
                             "Client details not found for card number: " + cardNumber));
+            activated = client.getActivated();
+        }
+
+        return new UserSnapshot(appUser.getCardNumber(), appUser.getPassword(), appUser.getRole(), activated);
+    }
 
-            if (client.getActivated() != null && client.getActivated()) {
+    // ROLE_<role>, and for clients ROLE_ACTIVATED or ROLE_DEACTIVATED
+    // shared by the login path and the token claims so both grant exactly the same authorities
+    public static List<GrantedAuthority> buildAuthorities(String role, Boolean activated) {
+        List<GrantedAuthority> authorities = new ArrayList<>();
+
+        if (role != null && !role.isEmpty()) {
+            authorities.add(new SimpleGrantedAuthority("ROLE_" + role.toUpperCase()));
+        }
+
+        if ("CLIENT".equalsIgnoreCase(role)) {
+            if (activated != null && activated) {
                 authorities.add(new SimpleGrantedAuthority("ROLE_ACTIVATED"));
             } else {
                 authorities.add(new SimpleGrantedAuthority("ROLE_DEACTIVATED"));
             }
         }
-
-        return new org.springframework.security.core.userdetails.User(
-                appUser.getCardNumber(),
-                appUser.getPassword(),
-                authorities);
+        return authorities;
     }
 
+    // the owner of an account is cached, so the check is usually answered without a database call
     public void verifyAccountOwnership(String accountId, String cardNumber) {
         ValidationUtil.validateCardNumber(cardNumber);
         ValidationUtil.validateNotEmpty(accountId, "Account ID");
-        Account account = accountRepository.findById(accountId)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Account not found"));
-
-        Client client = clientRepository.findById(account.getClientId())
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
-                        "Client associated with account not found"));
-
-        ValidationUtil.validateAccountOwnership(client.getUserCardNumber(), cardNumber);
+        ValidationUtil.validateAccountOwnership(accountOwnerService.getOwnerCardNumber(accountId), cardNumber);
     }
 
     public String validateAndExtractUsername(String authorizationHeader) {
+        return validateAndExtractClaims(authorizationHeader).getSubject();
+    }
+
+    // verifies the bearer token once and returns its claims
+    // tokens with an epoch claim are also rejected once the user's epoch has moved on
+    public Claims validateAndExtractClaims(String authorizationHeader) {
+        if (authorizationHeader == null || !authorizationHeader.startsWith("Bearer ")) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Missing bearer token");
+        }
         String token = authorizationHeader.substring(7);
-        ValidationUtil.validateToken(token, jwtUtil);
 
+        Claims claims;
         try {
-            return jwtUtil.extractUsername(token);
-        } catch (Exception e) {
-            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Token validation failed: " + e.getMessage());
+            claims = jwtUtil.verify(token);
+        } catch (JwtException | IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid or expired token");
         }
+
+        if (claims.get(JwtUtil.CLAIM_EPOCH) instanceof Number epoch
+                && !tokenEpochService.isCurrent(claims.getSubject(), epoch.longValue())) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Token has been revoked");
+        }
+        return claims;
     }
 
     public String getAuthenticatedCardNumber(UserDetails userDetails) {
@@ -121,8 +196,33 @@ public class AuthenticationService implements UserDetailsService {
         return userDetails.getUsername();
     }
 
+    // the role, activation state and epoch are read once here and signed into the token
     public String generateToken(String username) {
-        return jwtUtil.generateToken(username);
+        User user = findUserForToken(username);
+        return jwtUtil.generateToken(username, user.getRole(), activationForToken(user),
+                tokenEpochService.currentEpoch(username));
+    }
+
+    // access and refresh token for a user that has just logged in
+    public RefreshTokenService.TokenPair generateTokens(String username) {
+        User user = findUserForToken(username);
+        return refreshTokenService.issue(username, user.getRole(), activationForToken(user),
+                tokenEpochService.currentEpoch(username));
+    }
+
+    private User findUserForToken(String username) {
+        return userRepository.findByCardNumber(username)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found"));
+    }
+
+    // only clients carry an activation state
+    private Boolean activationForToken(User user) {
+        if (!"CLIENT".equalsIgnoreCase(user.getRole())) {
+            return null;
+        }
+        return clientRepository.findByUserCardNumber(user.getCardNumber())
+                .map(Client::getActivated)
+                .orElse(false);
     }
 
     public String validateAuthenticatedUser(UserDetails userDetails) {
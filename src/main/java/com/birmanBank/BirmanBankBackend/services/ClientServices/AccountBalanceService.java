@@ -0,0 +1,69 @@
+package com.birmanBank.BirmanBankBackend.services.ClientServices;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.birmanBank.BirmanBankBackend.models.Account;
+import com.birmanBank.BirmanBankBackend.models.Money;
+import com.birmanBank.BirmanBankBackend.repositories.AccountRepository;
+import com.birmanBank.BirmanBankBackend.services.RequestIdentityMap;
+
+/*
+ * AccountBalanceService is the single place where account balances are changed
+ * every change is an atomic conditional update on the server, so concurrent requests
+ * cannot lose each other's updates and no account is ever written back as a whole document
+ * amounts come in as Money and are only turned into decimals for the update itself
+ */
+
+@Service
+public class AccountBalanceService {
+
+    // -----------------------Constructors----------------------//
+    private final AccountRepository accountRepository;
+    private final RequestIdentityMap requestIdentityMap;
+
+    public AccountBalanceService(AccountRepository accountRepository, RequestIdentityMap requestIdentityMap) {
+        this.accountRepository = accountRepository;
+        this.requestIdentityMap = requestIdentityMap;
+    }
+    // ---------------------------------------------------------------//
+
+    // result of moving money between two accounts, both with their post-transaction balances
+    public record Transfer(Account source, Account destination) {
+    }
+
+    // adds the amount to the account and returns it with the new balance
+    public Account credit(String accountId, Money amount) {
+        return accountRepository.creditBalance(accountId, amount.toBigDecimal())
+                .map(requestIdentityMap::remember)
+                .orElseThrow(() -> accountNotFound(accountId));
+    }
+
+    // removes the amount from the account only if the balance covers it
+    public Account debit(String accountId, Money amount) {
+        return accountRepository.debitBalance(accountId, amount.toBigDecimal())
+                .map(requestIdentityMap::remember)
+                .orElseThrow(() -> accountRepository.existsById(accountId)
+                        ? new ResponseStatusException(HttpStatus.BAD_REQUEST, "Insufficient balance in account")
+                        : accountNotFound(accountId));
+    }
+
+    // debits the source and credits the destination
+    // if the credit fails the debit is reversed so money is never lost between the two updates
+    public Transfer transfer(String sourceAccountId, Money debitAmount,
+            String destinationAccountId, Money creditAmount) {
+        Account source = debit(sourceAccountId, debitAmount);
+        try {
+            Account destination = credit(destinationAccountId, creditAmount);
+            return new Transfer(source, destination);
+        } catch (RuntimeException e) {
+            credit(sourceAccountId, debitAmount);
+            throw e;
+        }
+    }
+
+    private ResponseStatusException accountNotFound(String accountId) {
+        return new ResponseStatusException(HttpStatus.NOT_FOUND, "Account not found: " + accountId);
+    }
+}
@@ -0,0 +1,238 @@
+package com.birmanBank.BirmanBankBackend.services.ClientServices;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.birmanBank.BirmanBankBackend.models.Account;
+import com.birmanBank.BirmanBankBackend.models.Client;
+
+import com.birmanBank.BirmanBankBackend.repositories.AccountRepository;
+
+import com.birmanBank.BirmanBankBackend.services.AccountChangedEvent;
+import com.birmanBank.BirmanBankBackend.services.RequestIdentityMap;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/*
+ * AccountDesignationService maintains two account pointers on every client
+ * the primary account is the one opened with the profile, the default deposit account receives
+ * transfers by phone number and loan disbursements (the oldest chequing account unless the client picks another)
+ * both are point reads instead of loading and filtering every account of the client
+ * clients created before the pointers existed get them on first use, or all at once through the admin migration
+ */
+
+@Service
+public class AccountDesignationService {
+
+    private static final Logger log = LoggerFactory.getLogger(AccountDesignationService.class);
+
+    private static final int MIGRATION_BATCH_SIZE = 500;
+
+    // oldest account first, the account ID breaks ties so the choice is the same on every instance
+    private static final Comparator<Account> OPENING_ORDER = Comparator
+            .comparing(Account::getCreatedAt, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(Account::getAccountId);
+
+    // -----------------------Constructors----------------------//
+    private final AccountRepository accountRepository;
+    private final RequestIdentityMap requestIdentityMap;
+    private final MongoTemplate mongoTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public AccountDesignationService(AccountRepository accountRepository,
+            RequestIdentityMap requestIdentityMap,
+            MongoTemplate mongoTemplate,
+            ApplicationEventPublisher eventPublisher) {
+        this.accountRepository = accountRepository;
+        this.requestIdentityMap = requestIdentityMap;
+        this.mongoTemplate = mongoTemplate;
+        this.eventPublisher = eventPublisher;
+    }
+    // ---------------------------------------------------------------//
+
+    // the primary and default deposit account of a client, both null for a client without accounts
+    public record Designation(String primaryAccountId, String defaultDepositAccountId) {
+    }
+
+    // clients looked at and clients that were given pointers by a migration
+    public record MigrationResult(int clients, int designated) {
+    }
+
+    public Designation getDesignation(String clientId) {
+        Client client = requestIdentityMap.findClient(clientId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Client not found"));
+        if (client.getPrimaryAccountId() != null && client.getDefaultDepositAccountId() != null) {
+            return new Designation(client.getPrimaryAccountId(), client.getDefaultDepositAccountId());
+        }
+        return designate(client);
+    }
+
+    public String getPrimaryAccountId(String clientId) {
+        return getDesignation(clientId).primaryAccountId();
+    }
+
+    // the account transfers and loans are paid into, empty when the client has no account
+    public Optional<Account> findDefaultDepositAccount(String clientId) {
+        String accountId = getDesignation(clientId).defaultDepositAccountId();
+        if (accountId == null) {
+            return Optional.empty();
+        }
+        Optional<Account> account = requestIdentityMap.findAccount(accountId)
+                .filter(a -> clientId.equals(a.getClientId()));
+        if (account.isPresent()) {
+            return account;
+        }
+        // the pointer is stale (the account was removed by another instance), designate again
+        Client client = requestIdentityMap.findClient(clientId).orElseThrow();
+        String designated = designate(client).defaultDepositAccountId();
+        return designated == null ? Optional.empty() : requestIdentityMap.findAccount(designated);
+    }
+
+    // lets the client choose which of its accounts receives money
+    public Account setDefaultDepositAccount(String clientId, String accountId) {
+        Account account = requestIdentityMap.findAccount(accountId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Account not found."));
+        if (!clientId.equals(account.getClientId())) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Account does not belong to the authenticated user");
+        }
+        String previous = getDesignation(clientId).defaultDepositAccountId();
+        mongoTemplate.updateFirst(Query.query(Criteria.where("clientId").is(clientId)),
+                new Update().set("defaultDepositAccountId", accountId).set("updatedAt", LocalDateTime.now()),
+                Client.class);
+        requestIdentityMap.findClient(clientId).ifPresent(client -> client.setDefaultDepositAccountId(accountId));
+        if (previous != null && !previous.equals(accountId)) {
+            // cached recipients still point at the previous account
+            eventPublisher.publishEvent(new AccountChangedEvent(previous));
+        }
+        return account;
+    }
+
+    // a new client gets its pointers with its first account, an existing client keeps the ones it has
+    public void onAccountCreated(Account account) {
+        requestIdentityMap.findClient(account.getClientId())
+                .filter(client -> client.getPrimaryAccountId() == null || client.getDefaultDepositAccountId() == null)
+                .ifPresent(this::designate);
+    }
+
+    // clears the pointers to an account that was deleted or moved to another client
+    // the client is designated again the next time its pointers are needed
+    @EventListener
+    public void onAccountChanged(AccountChangedEvent event) {
+        Optional<Account> account = accountRepository.findById(event.accountId());
+        for (String field : List.of("primaryAccountId", "defaultDepositAccountId")) {
+            Criteria pointing = Criteria.where(field).is(event.accountId());
+            if (account.isPresent()) {
+                pointing = pointing.and("clientId").ne(account.get().getClientId());
+            }
+            mongoTemplate.updateMulti(Query.query(pointing), new Update().unset(field), Client.class);
+        }
+    }
+
+    // gives every client without pointers its primary and default deposit account
+    public MigrationResult migrateAll() {
+        Query missing = Query.query(new Criteria().orOperator(
+                Criteria.where("primaryAccountId").exists(false),
+                Criteria.where("defaultDepositAccountId").exists(false)));
+        int clients = 0;
+        int designated = 0;
+        List<Client> batch = new ArrayList<>(MIGRATION_BATCH_SIZE);
+        try (Stream<Client> stream = mongoTemplate.stream(missing, Client.class)) {
+            for (Client client : (Iterable<Client>) stream::iterator) {
+                batch.add(client);
+                clients++;
+                if (batch.size() == MIGRATION_BATCH_SIZE) {
+                    designated += designateAll(batch);
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            designated += designateAll(batch);
+        }
+        log.info("Account designation migration gave pointers to {} of {} clients", designated, clients);
+        return new MigrationResult(clients, designated);
+    }
+
+    // picks the primary and default deposit account out of a client's accounts without writing anything
+    // pointers the client already has are kept as long as they still name one of its accounts
+    public Designation designationOf(Client client, List<Account> accounts) {
+        if (accounts.isEmpty()) {
+            return new Designation(null, null);
+        }
+        List<Account> ordered = new ArrayList<>(accounts);
+        ordered.sort(OPENING_ORDER);
+        String primary = ordered.stream()
+                .map(Account::getAccountId)
+                .filter(id -> id.equals(client.getPrimaryAccountId()))
+                .findFirst()
+                .orElse(ordered.get(0).getAccountId());
+        String defaultDeposit = ordered.stream()
+                .map(Account::getAccountId)
+                .filter(id -> id.equals(client.getDefaultDepositAccountId()))
+                .findFirst()
+                .or(() -> ordered.stream()
+                        .filter(a -> "Chequing".equalsIgnoreCase(a.getAccountType()))
+                        .map(Account::getAccountId)
+                        .findFirst())
+                .orElse(primary);
+        return new Designation(primary, defaultDeposit);
+    }
+
+    // designates one client from its accounts and stores the pointers
+    private Designation designate(Client client) {
+        Designation designation = designationOf(client, accountRepository.findByClientId(client.getClientId()));
+        if (designation.primaryAccountId() != null) {
+            mongoTemplate.updateFirst(Query.query(Criteria.where("clientId").is(client.getClientId())),
+                    pointers(designation), Client.class);
+            client.setPrimaryAccountId(designation.primaryAccountId());
+            client.setDefaultDepositAccountId(designation.defaultDepositAccountId());
+        }
+        return designation;
+    }
+
+    // designates a batch of clients with one accounts query and one bulk write
+    private int designateAll(List<Client> clients) {
+        Map<String, List<Account>> accountsByClient = new HashMap<>();
+        accountRepository.findByClientIdIn(clients.stream().map(Client::getClientId).toList())
+                .forEach(account -> accountsByClient.computeIfAbsent(account.getClientId(), id -> new ArrayList<>())
+                        .add(account));
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Client.class);
+        int designated = 0;
+        for (Client client : clients) {
+            Designation designation = designationOf(client,
+                    accountsByClient.getOrDefault(client.getClientId(), List.of()));
+            if (designation.primaryAccountId() != null) {
+                bulk.updateOne(Query.query(Criteria.where("clientId").is(client.getClientId())), pointers(designation));
+                designated++;
+            }
+        }
+        if (designated > 0) {
+            bulk.execute();
+        }
+        return designated;
+    }
+
+    private Update pointers(Designation designation) {
+        return new Update()
+                .set("primaryAccountId", designation.primaryAccountId())
+                .set("defaultDepositAccountId", designation.defaultDepositAccountId());
+    }
+}
@@ -0,0 +1,117 @@
+package com.birmanBank.BirmanBankBackend.services.ClientServices;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/*
+ * AccountSequencer orders operations on the same account inside this process
+ * every account ID hashes onto one of a fixed number of lanes (stripes), and each lane admits one writer at a time
+ * operations on one account run in arrival order, while accounts on different lanes run in parallel
+ * multi-account operations take their lanes in ascending lane order so two transfers can never deadlock
+ * calls must not be nested - take every account an operation needs in a single call
+ */
+
+@Component
+public class AccountSequencer {
+
+    private final Stripe[] stripes;
+
+    public AccountSequencer(@Value("${bank.accounts.sequencer-stripes:64}") int stripeCount) {
+        if (stripeCount <= 0) {
+            throw new IllegalArgumentException("bank.accounts.sequencer-stripes must be greater than zero");
+        }
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    // contention snapshot of a single lane
+    public record StripeStats(int stripe, int queueDepth, long acquisitions, double averageWaitMicros,
+            double maxWaitMicros) {
+    }
+
+    // runs the action while holding the lane of the given account
+    public <T> T onAccount(String accountId, Supplier<T> action) {
+        return onAccounts(List.of(accountId), action);
+    }
+
+    public void onAccount(String accountId, Runnable action) {
+        onAccounts(List.of(accountId), action);
+    }
+
+    // runs the action while holding the lanes of all given accounts
+    public <T> T onAccounts(Collection<String> accountIds, Supplier<T> action) {
+        int[] lanes = accountIds.stream()
+                .filter(Objects::nonNull)
+                .mapToInt(this::stripeFor)
+                .distinct()
+                .sorted() // fixed global order is what makes multi-lane acquisition deadlock free
+                .toArray();
+
+        int held = 0;
+        try {
+            for (int lane : lanes) {
+                stripes[lane].acquire();
+                held++;
+            }
+            return action.get();
+        } finally {
+            for (int i = held - 1; i >= 0; i--) {
+                stripes[lanes[i]].lock.unlock();
+            }
+        }
+    }
+
+    public void onAccounts(Collection<String> accountIds, Runnable action) {
+        onAccounts(accountIds, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    // current queue depth and wait times for every lane
+    public List<StripeStats> getStats() {
+        List<StripeStats> stats = new ArrayList<>(stripes.length);
+        for (int i = 0; i < stripes.length; i++) {
+            Stripe stripe = stripes[i];
+            long acquisitions = stripe.acquisitions.sum();
+            double averageWaitMicros = acquisitions == 0 ? 0 : stripe.totalWaitNanos.sum() / 1000.0 / acquisitions;
+            stats.add(new StripeStats(i, stripe.lock.getQueueLength(), acquisitions, averageWaitMicros,
+                    stripe.maxWaitNanos.get() / 1000.0));
+        }
+        return stats;
+    }
+
+    private int stripeFor(String accountId) {
+        int hash = accountId.hashCode();
+        hash ^= (hash >>> 16); // spread the high bits, sequential IDs otherwise cluster on a few lanes
+        return Math.floorMod(hash, stripes.length);
+    }
+
+    private static final class Stripe {
+        // fair so that waiting writers are served in arrival order
+        private final ReentrantLock lock = new ReentrantLock(true);
+        private final LongAdder acquisitions = new LongAdder();
+        private final LongAdder totalWaitNanos = new LongAdder();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+
+        private void acquire() {
+            long start = System.nanoTime();
+            lock.lock();
+            long waited = System.nanoTime() - start;
+            acquisitions.increment();
+            totalWaitNanos.add(waited);
+            maxWaitNanos.accumulateAndGet(waited, Math::max);
+        }
+    }
+}
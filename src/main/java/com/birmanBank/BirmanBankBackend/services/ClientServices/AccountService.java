@@ -1,5 +1,6 @@
 package com.birmanBank.BirmanBankBackend.services.ClientServices;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.http.HttpStatus;
@@ -8,7 +9,10 @@ import com.birmanBank.BirmanBankBackend.models.Account;
 import com.birmanBank.BirmanBankBackend.models.Client;
 import com.birmanBank.BirmanBankBackend.repositories.AccountRepository;
 import com.birmanBank.BirmanBankBackend.repositories.ClientRepository;
+import com.birmanBank.BirmanBankBackend.services.AccountChangedEvent;
+import com.birmanBank.BirmanBankBackend.services.RequestIdentityMap;
 
+import com.birmanBank.BirmanBankBackend.utils.IdGenerator;
 import com.birmanBank.BirmanBankBackend.utils.ValidationUtil;
 
 import java.math.BigDecimal;
@@ -21,21 +25,40 @@ public class AccountService {
     // -----------------------Constructors----------------------//
     private final AccountRepository accountRepository;
     private final ClientRepository clientRepository;
-
-    public AccountService(AccountRepository accountRepository, ClientRepository clientRepository) {
+    private final IdGenerator idGenerator;
+    private final RequestIdentityMap requestIdentityMap;
+    private final ApplicationEventPublisher eventPublisher;
+    private final AccountDesignationService accountDesignationService;
+
+    public AccountService(AccountRepository accountRepository, ClientRepository clientRepository,
+            IdGenerator idGenerator, RequestIdentityMap requestIdentityMap,
+            ApplicationEventPublisher eventPublisher, AccountDesignationService accountDesignationService) {
         this.accountRepository = accountRepository;
         this.clientRepository = clientRepository;
+        this.idGenerator = idGenerator;
+        this.requestIdentityMap = requestIdentityMap;
+        this.eventPublisher = eventPublisher;
+        this.accountDesignationService = accountDesignationService;
     }
     // ---------------------------------------------------------------//
 
     // create a new account
     public Account createAccount(Account account) {
-        return accountRepository.save(account);
+        Account savedAccount = requestIdentityMap.remember(accountRepository.save(account));
+        accountDesignationService.onAccountCreated(savedAccount);
+        return savedAccount;
+    }
+
+    // replaces an existing account, its owner may have changed so the cached owner is dropped
+    public Account updateAccount(Account account) {
+        Account savedAccount = requestIdentityMap.remember(accountRepository.save(account));
+        eventPublisher.publishEvent(new AccountChangedEvent(savedAccount.getAccountId()));
+        return savedAccount;
     }
 
-    // retrieve an account by its ID
+    // retrieve an account by its ID, at most once per request
     public Optional<Account> getAccountById(String accountId) {
-        return accountRepository.findById(accountId);
+        return requestIdentityMap.findAccount(accountId);
     }
 
     // retrieve all accounts for a specific client (one-to-many relationship)
@@ -43,15 +66,10 @@ public class AccountService {
         return accountRepository.findByClientId(clientId);
     }
 
-    // retrieve all accounts
-    public List<Account> getAllAccounts() {
-        return accountRepository.findAll();
-    }
-
     // retrieve all accounts for a user by their card number (moved from controller)
     public List<Account> getAccountsForAuthenticatedUser(String cardNumber) {
         ValidationUtil.validateCardNumber(cardNumber);
-        Client client = clientRepository.findByUserCardNumber(cardNumber)
+        Client client = requestIdentityMap.findClientByUserCardNumber(cardNumber)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
                         "Client associated with token not found"));
         return accountRepository.findByClientId(client.getClientId());
@@ -75,12 +93,14 @@ public class AccountService {
                 .createdAt(LocalDateTime.now())
                 .updatedAt(LocalDateTime.now())
                 .build();
-        return accountRepository.save(account); // saves the account to the database
+        Account savedAccount = requestIdentityMap.remember(accountRepository.save(account)); // saves the account to the database
+        accountDesignationService.onAccountCreated(savedAccount);
+        return savedAccount;
     }
 
     public Account updateAccountName(String accountId, String clientId, String newAccountName) {
         // get the account by ID
-        Account account = accountRepository.findById(accountId)
+        Account account = requestIdentityMap.findAccount(accountId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Account not found."));
 
         // validate account ownership
@@ -93,53 +113,49 @@ public class AccountService {
         account.setUpdatedAt(LocalDateTime.now());
 
         // Save the updated account
-        return accountRepository.save(account);
+        return requestIdentityMap.remember(accountRepository.save(account));
     }
 
-    // generates a unique account ID based on the current time in milliseconds
+    // generates a unique, time ordered account ID
     private String generateAccountId() {
-        return String.valueOf(System.currentTimeMillis());
+        return idGenerator.nextIdString();
     }
 
     public void deleteAccount(String accountId, String clientId) {
         // get the account by ID
-        Account account = accountRepository.findById(accountId)
+        Account account = requestIdentityMap.findAccount(accountId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Account not found."));
 
         // validate account ownership
         ValidationUtil.validateAccountOwnership(account.getClientId(), clientId);
 
-        // get all accounts for the client
-        List<Account> clientAccounts = accountRepository.findByClientId(clientId);
-
-        // check if the client has only one account
-        if (clientAccounts.size() == 1) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
-                    "You cannot delete your only account.");
-        }
-
-        // try to identify the original account created with the client's profile
-        Account originalAccount = clientAccounts.stream()
-                .min((a1, a2) -> a1.getCreatedAt().compareTo(a2.getCreatedAt()))
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
-                        "Unable to determine the original account."));
-
-        if (originalAccount.getAccountId().equals(accountId)) {
+        // the original account created with the client's profile is the client's primary account
+        // any other account can be deleted, the primary one always remains
+        if (accountId.equals(accountDesignationService.getPrimaryAccountId(clientId))) {
+            // check if the client has only one account
+            if (accountRepository.countByClientId(clientId) == 1) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "You cannot delete your only account.");
+            }
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
                     "You cannot delete the original account created with your profile.");
         }
 
         // proceed to delete the account
         accountRepository.delete(account);
+        requestIdentityMap.forgetAccount(accountId);
+        eventPublisher.publishEvent(new AccountChangedEvent(accountId));
     }
 
     // delete an account by its ID
     public void deleteAccount(String accountId) {
         accountRepository.deleteById(accountId);
+        requestIdentityMap.forgetAccount(accountId);
+        eventPublisher.publishEvent(new AccountChangedEvent(accountId));
     }
 
     public Account getAccountOrThrow(String accountId) {
-        return accountRepository.findById(accountId)
+        return requestIdentityMap.findAccount(accountId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Account not found"));
     }
 }
\ No newline at end of file
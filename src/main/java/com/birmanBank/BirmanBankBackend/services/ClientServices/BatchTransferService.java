@@ -0,0 +1,373 @@
+package com.birmanBank.BirmanBankBackend.services.ClientServices;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.birmanBank.BirmanBankBackend.dto.BatchTransferRequest.TransferItem;
+import com.birmanBank.BirmanBankBackend.dto.BatchTransferResult;
+import com.birmanBank.BirmanBankBackend.models.Account;
+import com.birmanBank.BirmanBankBackend.models.Client;
+import com.birmanBank.BirmanBankBackend.models.Money;
+import com.birmanBank.BirmanBankBackend.models.OutboxMessage;
+import com.birmanBank.BirmanBankBackend.models.Transaction;
+import com.birmanBank.BirmanBankBackend.models.TransactionDescription;
+import com.birmanBank.BirmanBankBackend.models.User;
+
+import com.birmanBank.BirmanBankBackend.repositories.AccountRepository;
+import com.birmanBank.BirmanBankBackend.repositories.ClientRepository;
+import com.birmanBank.BirmanBankBackend.repositories.TransactionRepository;
+import com.birmanBank.BirmanBankBackend.repositories.UserRepository;
+
+import com.birmanBank.BirmanBankBackend.services.MessageService;
+import com.birmanBank.BirmanBankBackend.utils.IdGenerator;
+import com.birmanBank.BirmanBankBackend.utils.ValidationUtil;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/*
+ * BatchTransferService applies many client-to-client transfers in one request
+ * the whole batch is validated together and every lookup is a single $in query, no matter how many items there are
+ * balances are moved with one guarded debit per sender account and one bulk write for all credits,
+ * and all transaction records are inserted in one insertMany
+ * if the credits or the records cannot be written, the debits are credited back and those transfers fail together
+ * every item gets its own result, so one bad item does not fail the rest of the batch
+ * the recipients' notifications are held in the outbox before any money moves and released for the applied transfers,
+ * the same way a single transfer holds its notification
+ */
+
+@Service
+public class BatchTransferService {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchTransferService.class);
+
+    // -----------------------Constructors----------------------//
+    private final AccountRepository accountRepository;
+    private final ClientRepository clientRepository;
+    private final UserRepository userRepository;
+    private final TransactionRepository transactionRepository;
+    private final AccountBalanceService accountBalanceService;
+    private final AccountSequencer accountSequencer;
+    private final MessageService messageService;
+    private final DailyBalanceService dailyBalanceService;
+    private final AccountDesignationService accountDesignationService;
+    private final IdGenerator idGenerator;
+    private final int maxBatchSize;
+
+    public BatchTransferService(AccountRepository accountRepository,
+            ClientRepository clientRepository,
+            UserRepository userRepository,
+            TransactionRepository transactionRepository,
+            AccountBalanceService accountBalanceService,
+            AccountSequencer accountSequencer,
+            MessageService messageService,
+            DailyBalanceService dailyBalanceService,
+            AccountDesignationService accountDesignationService,
+            IdGenerator idGenerator,
+            @Value("${bank.transactions.max-batch-size:5000}") int maxBatchSize) {
+        this.accountRepository = accountRepository;
+        this.clientRepository = clientRepository;
+        this.userRepository = userRepository;
+        this.transactionRepository = transactionRepository;
+        this.accountBalanceService = accountBalanceService;
+        this.accountSequencer = accountSequencer;
+        this.messageService = messageService;
+        this.dailyBalanceService = dailyBalanceService;
+        this.accountDesignationService = accountDesignationService;
+        this.idGenerator = idGenerator;
+        this.maxBatchSize = maxBatchSize;
+    }
+    // ---------------------------------------------------------------//
+
+    // an item that passed validation and has its recipient resolved
+    // the ID of its credit record is assigned up front, the recipient's held notification waits on it
+    private record ResolvedTransfer(int index, TransferItem item, Money amount, Client recipientClient,
+            String recipientAccountId, String creditTransactionId) {
+    }
+
+    public List<BatchTransferResult> batchTransfer(String senderClientId, List<TransferItem> items) {
+        if (items == null || items.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Batch must contain at least one transfer");
+        }
+        if (items.size() > maxBatchSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Batch cannot contain more than " + maxBatchSize + " transfers");
+        }
+
+        BatchTransferResult[] results = new BatchTransferResult[items.size()];
+
+        // validate the request fields of every item
+        List<Integer> candidates = new ArrayList<>();
+        Money[] amounts = new Money[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            TransferItem item = items.get(i);
+            try {
+                if (item == null) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Transfer is empty");
+                }
+                ValidationUtil.validateNotEmpty(item.getSenderAccountId(), "Sender account ID");
+                ValidationUtil.validateNotEmpty(item.getRecipientPhoneNumber(), "Recipient phone number");
+                amounts[i] = ValidationUtil.validateMoneyAmount(item.getAmount(), "Transfer amount");
+                candidates.add(i);
+            } catch (ResponseStatusException e) {
+                results[i] = BatchTransferResult.failure(i, e.getReason());
+            }
+        }
+
+        // resolve all recipients, their users and their accounts with one query each
+        Set<String> phoneNumbers = candidates.stream()
+                .map(i -> items.get(i).getRecipientPhoneNumber())
+                .collect(Collectors.toSet());
+        Map<String, Client> clientsByPhone = clientRepository.findByPhoneNumberIn(phoneNumbers).stream()
+                .collect(Collectors.toMap(Client::getPhoneNumber, Function.identity(), (a, b) -> a));
+
+        Set<String> recipientClientIds = clientsByPhone.values().stream()
+                .map(Client::getClientId)
+                .collect(Collectors.toSet());
+        Map<String, User> usersByCardNumber = new HashMap<>();
+        userRepository.findAllById(recipientClientIds).forEach(user -> usersByCardNumber.put(user.getCardNumber(), user));
+        Map<String, List<Account>> accountsByClient = new HashMap<>();
+        accountRepository.findByClientIdIn(recipientClientIds)
+                .forEach(account -> accountsByClient.computeIfAbsent(account.getClientId(), id -> new ArrayList<>())
+                        .add(account));
+        Map<String, String> recipientAccountByClient = new HashMap<>();
+        clientsByPhone.values().forEach(client -> {
+            String accountId = accountDesignationService.designationOf(client,
+                    accountsByClient.getOrDefault(client.getClientId(), List.of())).defaultDepositAccountId();
+            if (accountId != null) {
+                recipientAccountByClient.put(client.getClientId(), accountId);
+            }
+        });
+
+        List<ResolvedTransfer> resolved = new ArrayList<>();
+        for (int i : candidates) {
+            TransferItem item = items.get(i);
+            try {
+                Client recipientClient = clientsByPhone.get(item.getRecipientPhoneNumber());
+                if (recipientClient == null) {
+                    throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Recipient not found");
+                }
+                User recipientUser = usersByCardNumber.get(recipientClient.getClientId());
+                if (recipientUser == null) {
+                    throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Recipient user not found");
+                }
+                ValidationUtil.validateNonAdminTransfer(recipientUser.getRole());
+                String recipientAccountId = recipientAccountByClient.get(recipientClient.getClientId());
+                if (recipientAccountId == null) {
+                    throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Recipient account not found");
+                }
+                resolved.add(new ResolvedTransfer(i, item, amounts[i], recipientClient, recipientAccountId,
+                        idGenerator.nextIdString()));
+            } catch (ResponseStatusException e) {
+                results[i] = BatchTransferResult.failure(i, e.getReason());
+            }
+        }
+
+        // hold a notification for every recipient with one outbox insert, before any money moves
+        List<OutboxMessage> notifications = new ArrayList<>(resolved.size());
+        for (ResolvedTransfer transfer : resolved) {
+            String body = "You have received a transfer of $" + transfer.amount() + " from client ID: "
+                    + senderClientId;
+            notifications.add(MessageService.heldMessage(transfer.recipientClient().getClientId(),
+                    "Money Received", body, transfer.recipientAccountId(), transfer.creditTransactionId()));
+        }
+        List<OutboxMessage> held = messageService.holdMessages(notifications);
+
+        // apply everything on the lanes of every account involved
+        Set<String> accountIds = new HashSet<>();
+        resolved.forEach(transfer -> {
+            accountIds.add(transfer.item().getSenderAccountId());
+            accountIds.add(transfer.recipientAccountId());
+        });
+        List<ResolvedTransfer> applied;
+        try {
+            applied = accountSequencer.onAccounts(accountIds,
+                    () -> applyTransfers(senderClientId, accountIds, resolved, results));
+        } catch (RuntimeException e) {
+            settleNotifications(held, Set.of());
+            throw e;
+        }
+
+        Set<String> appliedCredits = applied.stream()
+                .map(ResolvedTransfer::creditTransactionId)
+                .collect(Collectors.toSet());
+        settleNotifications(held, appliedCredits);
+
+        return List.of(results);
+    }
+
+    // releases the notifications of the applied transfers and drops the rest
+    // the transfers are final by now, a failed write is left to the OutboxDispatcher's sweep of held messages
+    private void settleNotifications(List<OutboxMessage> held, Set<String> appliedCredits) {
+        Map<Boolean, List<OutboxMessage>> byApplied = held.stream().collect(
+                Collectors.partitioningBy(message -> appliedCredits.contains(message.getAwaitedTransactionId())));
+        try {
+            messageService.releaseMessages(byApplied.get(true));
+            messageService.discardMessages(byApplied.get(false));
+        } catch (RuntimeException e) {
+            log.warn("Could not settle {} held batch notifications, the outbox sweep will: {}", held.size(),
+                    e.getMessage());
+        }
+    }
+
+    // moves the money of all resolved transfers and records them
+    // will return the transfers that were applied, results of the rest are filled in as failures
+    private List<ResolvedTransfer> applyTransfers(String senderClientId, Set<String> accountIds,
+            List<ResolvedTransfer> resolved, BatchTransferResult[] results) {
+        // read every involved account once, now that no other operation in this process can change them
+        Map<String, Account> accounts = new HashMap<>();
+        accountRepository.findAllById(accountIds).forEach(account -> accounts.put(account.getAccountId(), account));
+
+        // replay the batch in order against the balances in memory
+        // available tracks what each sender can still spend, incoming credits are not spent within the batch
+        // a stored balance with a fraction of a cent can only spend the whole cents of it
+        Map<String, Money> available = new HashMap<>();
+        Map<String, Money> debits = new LinkedHashMap<>();
+        List<ResolvedTransfer> accepted = new ArrayList<>();
+        for (ResolvedTransfer transfer : resolved) {
+            String senderAccountId = transfer.item().getSenderAccountId();
+            try {
+                Account senderAccount = accounts.get(senderAccountId);
+                if (senderAccount == null) {
+                    throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Account not found: " + senderAccountId);
+                }
+                ValidationUtil.validateAccountOwnership(senderAccount.getClientId(), senderClientId);
+                if (!accounts.containsKey(transfer.recipientAccountId())) {
+                    throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Recipient account not found");
+                }
+                Money balance = available.computeIfAbsent(senderAccountId,
+                        id -> Money.of(senderAccount.getBalance(), RoundingMode.FLOOR));
+                ValidationUtil.validateSufficientBalance(balance, transfer.amount());
+
+                available.put(senderAccountId, balance.minus(transfer.amount()));
+                debits.merge(senderAccountId, transfer.amount(), Money::plus);
+                accepted.add(transfer);
+            } catch (ResponseStatusException e) {
+                results[transfer.index()] = BatchTransferResult.failure(transfer.index(), e.getReason());
+            }
+        }
+
+        // one guarded debit per sender account, a sender that fails here fails all of its transfers
+        Set<String> failedSenders = new HashSet<>();
+        for (Map.Entry<String, Money> debit : debits.entrySet()) {
+            try {
+                accountBalanceService.debit(debit.getKey(), debit.getValue());
+            } catch (ResponseStatusException e) {
+                failedSenders.add(debit.getKey());
+                for (ResolvedTransfer transfer : accepted) {
+                    if (transfer.item().getSenderAccountId().equals(debit.getKey())) {
+                        results[transfer.index()] = BatchTransferResult.failure(transfer.index(), e.getReason());
+                    }
+                }
+            }
+        }
+        accepted.removeIf(transfer -> failedSenders.contains(transfer.item().getSenderAccountId()));
+
+        // all credits in one bulk write
+        Map<String, Money> credits = new HashMap<>();
+        accepted.forEach(transfer -> credits.merge(transfer.recipientAccountId(), transfer.amount(), Money::plus));
+        Map<String, BigDecimal> creditAmounts = new HashMap<>();
+        credits.forEach((accountId, amount) -> creditAmounts.put(accountId, amount.toBigDecimal()));
+        debits.keySet().removeAll(failedSenders);
+        try {
+            int matched = accountRepository.creditBalances(creditAmounts);
+            if (matched != creditAmounts.size()) {
+                // a recipient account is gone, take back the credits that did land
+                reverseCredits(creditAmounts);
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Recipient account not found");
+            }
+        } catch (RuntimeException e) {
+            refundDebits(debits);
+            return failAll(accepted, results, e);
+        }
+
+        // build both transaction records of every transfer with running balances and insert them together
+        // running balances start from the stored balances exactly as they are, fractions of a cent included
+        Map<String, BigDecimal> running = new HashMap<>();
+        accounts.forEach((accountId, account) -> running.put(accountId, account.getBalance()));
+        LocalDateTime now = LocalDateTime.now();
+        List<Transaction> transactions = new ArrayList<>(accepted.size() * 2);
+        for (ResolvedTransfer transfer : accepted) {
+            TransferItem item = transfer.item();
+            BigDecimal amount = transfer.amount().toBigDecimal();
+            BigDecimal senderBalance = running.merge(item.getSenderAccountId(), amount.negate(), BigDecimal::add);
+            BigDecimal recipientBalance = running.merge(transfer.recipientAccountId(), amount, BigDecimal::add);
+
+            transactions.add(Transaction.builder()
+                    .accountId(item.getSenderAccountId())
+                    .transactionType("DEBIT")
+                    .transactionAmount(amount)
+                    .postTransactionBalance(senderBalance)
+                    .timestamp(now)
+                    .transferToAccountId(transfer.recipientAccountId())
+                    .recipientPhoneNumber(item.getRecipientPhoneNumber())
+                    .describedAs(TransactionDescription.TRANSFER_TO)
+                    .build());
+
+            transactions.add(Transaction.builder()
+                    .transactionId(transfer.creditTransactionId())
+                    .accountId(transfer.recipientAccountId())
+                    .transactionType("CREDIT")
+                    .transactionAmount(amount)
+                    .postTransactionBalance(recipientBalance)
+                    .timestamp(now)
+                    .describedAs(TransactionDescription.TRANSFER_FROM_CLIENT, senderClientId)
+                    .build());
+
+            results[transfer.index()] = BatchTransferResult.success(transfer.index(), senderBalance);
+        }
+        if (!transactions.isEmpty()) {
+            try {
+                transactionRepository.insert(transactions);
+            } catch (RuntimeException e) {
+                // money without its records is undone, along with any records that were written
+                reverseCredits(creditAmounts);
+                refundDebits(debits);
+                transactionRepository.deleteAllById(transactions.stream()
+                        .map(Transaction::getTransactionId)
+                        .filter(Objects::nonNull)
+                        .toList());
+                return failAll(accepted, results, e);
+            }
+            dailyBalanceService.recordAll(transactions);
+        }
+        return accepted;
+    }
+
+    // credits every debited sender back, the same way AccountBalanceService.transfer reverses a debit
+    private void refundDebits(Map<String, Money> debits) {
+        debits.forEach(accountBalanceService::credit);
+    }
+
+    private void reverseCredits(Map<String, BigDecimal> creditAmounts) {
+        Map<String, BigDecimal> reversal = new HashMap<>();
+        creditAmounts.forEach((accountId, amount) -> reversal.put(accountId, amount.negate()));
+        accountRepository.creditBalances(reversal);
+    }
+
+    // marks every transfer that got past the debits as failed, will return the (empty) list of applied transfers
+    private List<ResolvedTransfer> failAll(List<ResolvedTransfer> accepted, BatchTransferResult[] results,
+            RuntimeException cause) {
+        String reason = cause instanceof ResponseStatusException status ? status.getReason()
+                : "Transfer could not be completed";
+        for (ResolvedTransfer transfer : accepted) {
+            results[transfer.index()] = BatchTransferResult.failure(transfer.index(), reason);
+        }
+        return List.of();
+    }
+}
@@ -1,5 +1,6 @@
 package com.birmanBank.BirmanBankBackend.services.ClientServices;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -13,12 +14,15 @@ import com.birmanBank.BirmanBankBackend.models.User;
 import com.birmanBank.BirmanBankBackend.repositories.ClientRepository;
 import com.birmanBank.BirmanBankBackend.repositories.UserRepository;
 import com.birmanBank.BirmanBankBackend.services.AuthenticationService;
+import com.birmanBank.BirmanBankBackend.services.RequestIdentityMap;
+import com.birmanBank.BirmanBankBackend.services.TokenEpochService;
+import com.birmanBank.BirmanBankBackend.services.UserChangedEvent;
 
+import com.birmanBank.BirmanBankBackend.utils.IdGenerator;
 import com.birmanBank.BirmanBankBackend.utils.ValidationUtil;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.util.List;
 import java.util.Optional;
 import java.util.Random;
 
@@ -30,35 +34,66 @@ public class ClientService {
     private final UserRepository userRepository;
     private final AccountService accountService;
     private final PasswordEncoder passwordEncoder;
+    private final IdGenerator idGenerator;
+    private final TokenEpochService tokenEpochService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final RequestIdentityMap requestIdentityMap;
 
     public ClientService(ClientRepository clientRepository,
-            UserRepository userRepository, AccountService accountService, PasswordEncoder passwordEncoder) {
+            UserRepository userRepository, AccountService accountService, PasswordEncoder passwordEncoder,
+            IdGenerator idGenerator, TokenEpochService tokenEpochService, ApplicationEventPublisher eventPublisher,
+            RequestIdentityMap requestIdentityMap) {
         this.clientRepository = clientRepository;
         this.userRepository = userRepository;
         this.accountService = accountService;
         this.passwordEncoder = passwordEncoder;
+        this.idGenerator = idGenerator;
+        this.tokenEpochService = tokenEpochService;
+        this.eventPublisher = eventPublisher;
+        this.requestIdentityMap = requestIdentityMap;
     }
     // ---------------------------------------------------------------//
 
     // create a new client
     public Client createClient(Client client) {
-        return clientRepository.save(client);
+        Client savedClient = clientRepository.save(client);
+        if (savedClient.getUserCardNumber() != null) {
+            eventPublisher.publishEvent(UserChangedEvent.created(savedClient.getUserCardNumber()));
+        }
+        return savedClient;
     }
 
-    // gets a client by its ID
+    // gets a client by its ID, at most once per request
     public Optional<Client> getClientById(String clientId) {
-        return clientRepository.findById(clientId);
+        return requestIdentityMap.findClient(clientId);
     }
 
     // updates a client by saving the client object - an overloaded version of
     // updateClient
+    // the activation state is signed into the client's tokens, so they are revoked on every update
     public Client updateClient(Client client) {
-        return clientRepository.save(client);
+        // the account pointers are maintained by the server, an update that leaves them out keeps the stored ones
+        if (client.getPrimaryAccountId() == null || client.getDefaultDepositAccountId() == null) {
+            requestIdentityMap.findClient(client.getClientId()).ifPresent(existing -> {
+                if (client.getPrimaryAccountId() == null) {
+                    client.setPrimaryAccountId(existing.getPrimaryAccountId());
+                }
+                if (client.getDefaultDepositAccountId() == null) {
+                    client.setDefaultDepositAccountId(existing.getDefaultDepositAccountId());
+                }
+            });
+        }
+        Client savedClient = requestIdentityMap.remember(clientRepository.save(client));
+        if (savedClient.getUserCardNumber() != null) {
+            tokenEpochService.bump(savedClient.getUserCardNumber());
+            eventPublisher.publishEvent(new UserChangedEvent(savedClient.getUserCardNumber()));
+        }
+        return savedClient;
     }
 
     // gets a client using their user card number
     public Optional<Client> getClientByUserCardNumber(String userCardNumber) {
-        return clientRepository.findByUserCardNumber(userCardNumber);
+        return requestIdentityMap.findClientByUserCardNumber(userCardNumber);
     }
 
     // gets a client by its phone number
@@ -66,11 +101,6 @@ public class ClientService {
         return clientRepository.findByPhoneNumber(phoneNumber);
     }
 
-    // gets all list of clients
-    public List<Client> getAllClients() {
-        return clientRepository.findAll();
-    }
-
     // New Registration Method
     @Transactional
     public User registerClientAndUser(Client clientRequest, String password) {
@@ -97,6 +127,7 @@ public class ClientService {
                 .updatedAt(LocalDateTime.now())
                 .build();
         userRepository.save(user);
+        tokenEpochService.reinstate(cardNumber);
 
         // Build and save a new client using information from the request and the
         // generated card number
@@ -152,16 +183,21 @@ public class ClientService {
         return cardNumber.toString();
     }
 
-    // generates a unique account ID using current time in milliseconds
+    // generates a unique, time ordered account ID
     private String generateAccountId() {
-        return String.valueOf(System.currentTimeMillis());
+        return idGenerator.nextIdString();
     }
 
     // deletes a client by its ID
     public void deleteClient(String clientId) {
         // validate if the client exists
-        clientRepository.findById(clientId)
+        Client client = requestIdentityMap.findClient(clientId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Client not found"));
         clientRepository.deleteById(clientId);
+        requestIdentityMap.forgetClient(client);
+        if (client.getUserCardNumber() != null) {
+            tokenEpochService.bump(client.getUserCardNumber());
+            eventPublisher.publishEvent(new UserChangedEvent(client.getUserCardNumber()));
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,272 @@
+package com.birmanBank.BirmanBankBackend.services.ClientServices;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Range;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.birmanBank.BirmanBankBackend.dto.DailyBalanceReport;
+import com.birmanBank.BirmanBankBackend.models.Account;
+import com.birmanBank.BirmanBankBackend.models.DailyBalance;
+import com.birmanBank.BirmanBankBackend.models.Transaction;
+
+import com.birmanBank.BirmanBankBackend.repositories.AccountRepository;
+import com.birmanBank.BirmanBankBackend.repositories.DailyBalanceRepository;
+import com.birmanBank.BirmanBankBackend.repositories.TransactionRepository;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/*
+ * DailyBalanceService keeps one bucket per account and day with the opening and closing balance,
+ * the credit and debit totals and the number of transactions of that day
+ * buckets are updated with a single upsert as every transaction is written,
+ * so a date range question reads at most one document per day instead of every transaction in the range
+ * the backfill rebuilds the buckets from the transactions for accounts that existed before the rollup
+ */
+
+@Service
+public class DailyBalanceService {
+
+    private static final Logger log = LoggerFactory.getLogger(DailyBalanceService.class);
+
+    private static final int MAX_RANGE_DAYS = 366;
+    private static final int BACKFILL_BATCH_SIZE = 500;
+
+    // -----------------------Constructors----------------------//
+    private final DailyBalanceRepository dailyBalanceRepository;
+    private final TransactionRepository transactionRepository;
+    private final AccountRepository accountRepository;
+    private final AccountSequencer accountSequencer;
+    private final MongoTemplate mongoTemplate;
+
+    public DailyBalanceService(DailyBalanceRepository dailyBalanceRepository,
+            TransactionRepository transactionRepository,
+            AccountRepository accountRepository,
+            AccountSequencer accountSequencer,
+            MongoTemplate mongoTemplate) {
+        this.dailyBalanceRepository = dailyBalanceRepository;
+        this.transactionRepository = transactionRepository;
+        this.accountRepository = accountRepository;
+        this.accountSequencer = accountSequencer;
+        this.mongoTemplate = mongoTemplate;
+    }
+    // ---------------------------------------------------------------//
+
+    // accounts and buckets written by a backfill
+    public record BackfillResult(int accounts, int buckets) {
+    }
+
+    // adds a saved transaction to the bucket of its day
+    // the money has already moved, so a failure is logged and left for the backfill instead of failing the request
+    public void record(Transaction transaction) {
+        try {
+            upsert(transaction);
+        } catch (DuplicateKeyException e) {
+            // another instance created the bucket at the same moment, the second attempt updates it
+            upsert(transaction);
+        } catch (DataAccessException e) {
+            log.warn("Could not update the daily balance of account {}: {}", transaction.getAccountId(),
+                    e.getMessage());
+        }
+    }
+
+    // adds many saved transactions with one ordered bulk write, later transactions close the day
+    public void recordAll(List<Transaction> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        try {
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, DailyBalance.class);
+            transactions.forEach(transaction -> bulk.upsert(bucketQuery(transaction), bucketChange(transaction)));
+            bulk.execute();
+        } catch (DataAccessException e) {
+            log.warn("Could not update the daily balances of {} transactions: {}", transactions.size(),
+                    e.getMessage());
+        }
+    }
+
+    // opening balance, closing balance, totals and average daily balance of an account over an inclusive date range
+    public DailyBalanceReport getReport(String accountId, LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Start date must not be after end date");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_RANGE_DAYS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Date range cannot be longer than " + MAX_RANGE_DAYS + " days");
+        }
+
+        List<DailyBalance> days = dailyBalanceRepository.findByAccountIdAndDateBetweenOrderByDateAsc(accountId,
+                Range.closed(from, to));
+
+        BigDecimal openingBalance = openingBalance(accountId, from, to, days);
+
+        // walk every day of the range, days without a bucket keep the balance of the day before
+        Map<LocalDate, DailyBalance> byDate = new HashMap<>();
+        days.forEach(day -> byDate.put(day.getDate(), day));
+        LocalDate lastDay = to.isAfter(LocalDate.now()) ? LocalDate.now() : to;
+        BigDecimal balance = openingBalance;
+        BigDecimal balanceSum = BigDecimal.ZERO;
+        long dayCount = 0;
+        for (LocalDate date = from; !date.isAfter(lastDay); date = date.plusDays(1)) {
+            DailyBalance day = byDate.get(date);
+            if (day != null) {
+                balance = day.getClosingBalance();
+            }
+            balanceSum = balanceSum.add(balance);
+            dayCount++;
+        }
+
+        BigDecimal totalCredits = BigDecimal.ZERO;
+        BigDecimal totalDebits = BigDecimal.ZERO;
+        long transactionCount = 0;
+        for (DailyBalance day : days) {
+            totalCredits = totalCredits.add(day.getTotalCredits());
+            totalDebits = totalDebits.add(day.getTotalDebits());
+            transactionCount += day.getTransactionCount();
+        }
+
+        BigDecimal averageDailyBalance = dayCount == 0 ? openingBalance
+                : balanceSum.divide(BigDecimal.valueOf(dayCount), 2, RoundingMode.HALF_EVEN);
+
+        return new DailyBalanceReport(accountId, from, to, openingBalance, balance, totalCredits, totalDebits,
+                transactionCount, averageDailyBalance, days);
+    }
+
+    // rebuilds the buckets of one account from its transactions
+    public BackfillResult backfill(String accountId) {
+        Account account = accountRepository.findById(accountId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Account not found: " + accountId));
+        return new BackfillResult(1, backfillAccount(account.getAccountId()));
+    }
+
+    // rebuilds the buckets of every account
+    public BackfillResult backfillAll() {
+        int accounts = 0;
+        int buckets = 0;
+        try (Stream<Account> stream = accountRepository.streamAllBy()) {
+            Iterator<Account> iterator = stream.iterator();
+            while (iterator.hasNext()) {
+                buckets += backfillAccount(iterator.next().getAccountId());
+                accounts++;
+            }
+        }
+        log.info("Daily balance backfill rebuilt {} buckets for {} accounts", buckets, accounts);
+        return new BackfillResult(accounts, buckets);
+    }
+
+    // the account's lane keeps new transactions from being recorded while its buckets are rebuilt
+    private int backfillAccount(String accountId) {
+        return accountSequencer.onAccount(accountId, () -> {
+            Map<LocalDate, DailyBalance> buckets = new LinkedHashMap<>();
+            try (Stream<Transaction> transactions = transactionRepository
+                    .streamByAccountIdAndTimestampBetweenOrderByTimestampAsc(accountId,
+                            LocalDateTime.of(1970, 1, 1, 0, 0), LocalDateTime.now().plusDays(1))) {
+                transactions.forEach(transaction -> apply(buckets, transaction));
+            }
+
+            dailyBalanceRepository.deleteByAccountId(accountId);
+            List<DailyBalance> batch = new ArrayList<>(BACKFILL_BATCH_SIZE);
+            for (DailyBalance bucket : buckets.values()) {
+                batch.add(bucket);
+                if (batch.size() == BACKFILL_BATCH_SIZE) {
+                    dailyBalanceRepository.insert(batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                dailyBalanceRepository.insert(batch);
+            }
+            return buckets.size();
+        });
+    }
+
+    // folds one transaction into the in-memory buckets of a backfill, same rules as the upsert
+    private void apply(Map<LocalDate, DailyBalance> buckets, Transaction transaction) {
+        LocalDate date = transaction.getTimestamp().toLocalDate();
+        DailyBalance bucket = buckets.computeIfAbsent(date, d -> DailyBalance.builder()
+                .id(bucketId(transaction.getAccountId(), d))
+                .accountId(transaction.getAccountId())
+                .date(d)
+                .openingBalance(balanceBefore(transaction))
+                .totalCredits(BigDecimal.ZERO)
+                .totalDebits(BigDecimal.ZERO)
+                .build());
+        if (isCredit(transaction)) {
+            bucket.setTotalCredits(bucket.getTotalCredits().add(transaction.getTransactionAmount()));
+        } else {
+            bucket.setTotalDebits(bucket.getTotalDebits().add(transaction.getTransactionAmount()));
+        }
+        bucket.setTransactionCount(bucket.getTransactionCount() + 1);
+        bucket.setClosingBalance(transaction.getPostTransactionBalance());
+        bucket.setLastTransactionAt(transaction.getTimestamp());
+    }
+
+    private void upsert(Transaction transaction) {
+        mongoTemplate.upsert(bucketQuery(transaction), bucketChange(transaction), DailyBalance.class);
+    }
+
+    private Query bucketQuery(Transaction transaction) {
+        return Query.query(Criteria.where("id")
+                .is(bucketId(transaction.getAccountId(), transaction.getTimestamp().toLocalDate())));
+    }
+
+    // the first transaction of a day sets the opening balance, every transaction moves the totals and the close
+    private Update bucketChange(Transaction transaction) {
+        return new Update()
+                .setOnInsert("accountId", transaction.getAccountId())
+                .setOnInsert("date", transaction.getTimestamp().toLocalDate())
+                .setOnInsert("openingBalance", balanceBefore(transaction))
+                .inc(isCredit(transaction) ? "totalCredits" : "totalDebits", transaction.getTransactionAmount())
+                .inc(isCredit(transaction) ? "totalDebits" : "totalCredits", BigDecimal.ZERO) // creates it as 0
+                .inc("transactionCount", 1)
+                .set("closingBalance", transaction.getPostTransactionBalance())
+                .set("lastTransactionAt", transaction.getTimestamp());
+    }
+
+    // the balance at the start of a range: the close of the last earlier bucket, else the open of the first later one
+    // an account without any buckets has never had a transaction, so its current balance is its balance throughout
+    private BigDecimal openingBalance(String accountId, LocalDate from, LocalDate to, List<DailyBalance> days) {
+        return dailyBalanceRepository.findFirstByAccountIdAndDateLessThanOrderByDateDesc(accountId, from)
+                .map(DailyBalance::getClosingBalance)
+                .or(() -> days.stream().findFirst().map(DailyBalance::getOpeningBalance))
+                .or(() -> dailyBalanceRepository.findFirstByAccountIdAndDateGreaterThanOrderByDateAsc(accountId, to)
+                        .map(DailyBalance::getOpeningBalance))
+                .orElseGet(() -> accountRepository.findById(accountId)
+                        .map(Account::getBalance)
+                        .orElse(BigDecimal.ZERO));
+    }
+
+    private BigDecimal balanceBefore(Transaction transaction) {
+        return isCredit(transaction)
+                ? transaction.getPostTransactionBalance().subtract(transaction.getTransactionAmount())
+                : transaction.getPostTransactionBalance().add(transaction.getTransactionAmount());
+    }
+
+    private boolean isCredit(Transaction transaction) {
+        return "CREDIT".equals(transaction.getTransactionType());
+    }
+
+    private String bucketId(String accountId, LocalDate date) {
+        return accountId + ":" + date;
+    }
+}
@@ -0,0 +1,104 @@
+package com.birmanBank.BirmanBankBackend.services.ClientServices;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.birmanBank.BirmanBankBackend.models.Account;
+import com.birmanBank.BirmanBankBackend.models.Client;
+import com.birmanBank.BirmanBankBackend.models.User;
+
+import com.birmanBank.BirmanBankBackend.repositories.ClientRepository;
+
+import com.birmanBank.BirmanBankBackend.services.AccountChangedEvent;
+import com.birmanBank.BirmanBankBackend.services.RequestIdentityMap;
+import com.birmanBank.BirmanBankBackend.services.UserChangedEvent;
+import com.birmanBank.BirmanBankBackend.utils.IndexedLruCache;
+import com.birmanBank.BirmanBankBackend.utils.LruCache;
+
+import java.time.Duration;
+
+/*
+ * RecipientDirectoryService resolves the phone number of a transfer to the recipient's client, role and deposit account
+ * resolving takes three queries, so the result is kept per phone number - clients mostly pay the same few contacts
+ * an entry is dropped when the recipient's user or client changes (phone, role, deletion)
+ * or when its deposit account is changed or deleted
+ * the cache is indexed by client and by account, so those events only touch the recipients they concern
+ */
+
+@Service
+public class RecipientDirectoryService {
+
+    // -----------------------Constructors----------------------//
+    private final ClientRepository clientRepository;
+    private final AccountDesignationService accountDesignationService;
+    private final RequestIdentityMap requestIdentityMap;
+    private final IndexedLruCache<String, Recipient> recipients;
+    private final IndexedLruCache.Index<String, Recipient> byClient;
+    private final IndexedLruCache.Index<String, Recipient> byAccount;
+
+    public RecipientDirectoryService(ClientRepository clientRepository,
+            AccountDesignationService accountDesignationService,
+            RequestIdentityMap requestIdentityMap,
+            @Value("${bank.transactions.recipient-cache-size:10000}") int cacheSize,
+            @Value("${bank.transactions.recipient-cache-ttl:10m}") Duration cacheTtl) {
+        this.clientRepository = clientRepository;
+        this.accountDesignationService = accountDesignationService;
+        this.requestIdentityMap = requestIdentityMap;
+        this.recipients = new IndexedLruCache<>(cacheSize, cacheTtl);
+        this.byClient = recipients.addIndex(Recipient::clientId);
+        this.byAccount = recipients.addIndex(Recipient::accountId);
+    }
+    // ---------------------------------------------------------------//
+
+    // the recipient behind a phone number and the account transfers to it are credited to
+    public record Recipient(String clientId, String role, String accountId) {
+    }
+
+    // resolves the recipient of a transfer, 404 when the client, its user or its account does not exist
+    public Recipient resolve(String phoneNumber) {
+        Recipient recipient = recipients.get(phoneNumber);
+        if (recipient == null) {
+            recipient = load(phoneNumber);
+            recipients.put(phoneNumber, recipient);
+        }
+        return recipient;
+    }
+
+    // the recipient's phone number, role or client may have changed
+    // a new user cannot be cached yet, lookups that found nobody are not kept
+    @EventListener
+    public void onUserChanged(UserChangedEvent event) {
+        if (!event.created()) {
+            recipients.removeAll(byClient, event.cardNumber());
+        }
+    }
+
+    // the deposit account was deleted or moved to another client
+    @EventListener
+    public void onAccountChanged(AccountChangedEvent event) {
+        recipients.removeAll(byAccount, event.accountId());
+    }
+
+    public LruCache.Stats getStats() {
+        return recipients.getStats();
+    }
+
+    private Recipient load(String phoneNumber) {
+        // find the recipient client by phone number
+        Client client = clientRepository.findByPhoneNumber(phoneNumber)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Recipient not found"));
+
+        // find the recipient user by client ID
+        User user = requestIdentityMap.findUser(client.getClientId())
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Recipient user not found"));
+
+        // find the recipient's default deposit account
+        Account account = accountDesignationService.findDefaultDepositAccount(client.getClientId())
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Recipient account not found"));
+
+        return new Recipient(client.getClientId(), user.getRole(), account.getAccountId());
+    }
+}
@@ -0,0 +1,138 @@
+package com.birmanBank.BirmanBankBackend.services.ClientServices;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.birmanBank.BirmanBankBackend.models.Transaction;
+import com.birmanBank.BirmanBankBackend.repositories.TransactionRepository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/*
+ * TransactionExportService writes an account's transaction history straight from a MongoDB cursor to the response
+ * only the current cursor batch and one row are held in memory, so heap use does not grow with the size of the export
+ */
+
+@Service
+public class TransactionExportService {
+
+    private static final String CSV_HEADER = "transactionId,accountId,transactionType,transactionAmount,"
+            + "postTransactionBalance,timestamp,transferToAccountId,recipientPhoneNumber,description";
+
+    // -----------------------Constructors----------------------//
+    private final TransactionRepository transactionRepository;
+    private final ObjectMapper objectMapper;
+
+    public TransactionExportService(TransactionRepository transactionRepository, ObjectMapper objectMapper) {
+        this.transactionRepository = transactionRepository;
+        this.objectMapper = objectMapper;
+    }
+    // ---------------------------------------------------------------//
+
+    public enum Format {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static Format of(String value) {
+            for (Format format : values()) {
+                if (format.extension.equalsIgnoreCase(value)) {
+                    return format;
+                }
+            }
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Export format must be csv or ndjson");
+        }
+    }
+
+    // builds the response body, the cursor is only opened once the body is written
+    public StreamingResponseBody export(String accountId, LocalDateTime startDate, LocalDateTime endDate,
+            Format format) {
+        if (!startDate.isBefore(endDate)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Start date must be before end date");
+        }
+        return outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            try (Stream<Transaction> transactions = transactionRepository
+                    .streamByAccountIdAndTimestampBetweenOrderByTimestampAsc(accountId, startDate, endDate)) {
+                if (format == Format.CSV) {
+                    writer.write(CSV_HEADER);
+                    writer.write('\n');
+                }
+                Iterator<Transaction> iterator = transactions.iterator();
+                while (iterator.hasNext()) {
+                    Transaction transaction = iterator.next();
+                    if (format == Format.CSV) {
+                        writeCsvRow(writer, transaction);
+                    } else {
+                        writer.write(objectMapper.writeValueAsString(transaction));
+                        writer.write('\n');
+                    }
+                }
+            }
+            writer.flush();
+        };
+    }
+
+    private void writeCsvRow(Writer writer, Transaction transaction) throws IOException {
+        writer.write(csv(transaction.getTransactionId()));
+        writer.write(',');
+        writer.write(csv(transaction.getAccountId()));
+        writer.write(',');
+        writer.write(csv(transaction.getTransactionType()));
+        writer.write(',');
+        writer.write(csv(transaction.getTransactionAmount()));
+        writer.write(',');
+        writer.write(csv(transaction.getPostTransactionBalance()));
+        writer.write(',');
+        writer.write(csv(transaction.getTimestamp() == null ? null : transaction.getTimestamp().toString()));
+        writer.write(',');
+        writer.write(csv(transaction.getTransferToAccountId()));
+        writer.write(',');
+        writer.write(csv(transaction.getRecipientPhoneNumber()));
+        writer.write(',');
+        writer.write(csv(transaction.getDescription()));
+        writer.write('\n');
+    }
+
+    private String csv(BigDecimal value) {
+        return value == null ? "" : value.toPlainString();
+    }
+
+    // quotes a value when it contains a separator, a quote or a line break
+    private String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -1,67 +1,108 @@
 package com.birmanBank.BirmanBankBackend.services.ClientServices;
 
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
+import com.birmanBank.BirmanBankBackend.dto.CursorPage;
 import com.birmanBank.BirmanBankBackend.models.Account;
+import com.birmanBank.BirmanBankBackend.models.Money;
+import com.birmanBank.BirmanBankBackend.models.OutboxMessage;
 import com.birmanBank.BirmanBankBackend.models.Transaction;
-import com.birmanBank.BirmanBankBackend.models.User;
-import com.birmanBank.BirmanBankBackend.models.Client;
+import com.birmanBank.BirmanBankBackend.models.TransactionDescription;
 
 import com.birmanBank.BirmanBankBackend.repositories.AccountRepository;
-import com.birmanBank.BirmanBankBackend.repositories.ClientRepository;
 import com.birmanBank.BirmanBankBackend.repositories.TransactionRepository;
-import com.birmanBank.BirmanBankBackend.repositories.UserRepository;
 
 import com.birmanBank.BirmanBankBackend.services.MessageService;
+import com.birmanBank.BirmanBankBackend.services.RequestIdentityMap;
+import com.birmanBank.BirmanBankBackend.services.TransactionStorageService;
+import com.birmanBank.BirmanBankBackend.utils.IdGenerator;
 import com.birmanBank.BirmanBankBackend.utils.ValidationUtil;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
 import java.util.List;
 import java.util.Optional;
 
 @Service
 public class TransactionService {
 
+    // transfers out of a savings account are charged 1.5%, rounded to the nearest cent (ties to even)
+    private static final long SAVINGS_FEE_PER_MILLE = 15;
+    private static final RoundingMode FEE_ROUNDING = RoundingMode.HALF_EVEN;
+
     // -----------------------Constructors----------------------//
     private final TransactionRepository transactionRepository;
     private final AccountRepository accountRepository;
-    private final ClientRepository clientRepository;
-    private final UserRepository userRepository;
     private final MessageService messageService;
+    private final AccountBalanceService accountBalanceService;
+    private final AccountSequencer accountSequencer;
+    private final DailyBalanceService dailyBalanceService;
+    private final RequestIdentityMap requestIdentityMap;
+    private final RecipientDirectoryService recipientDirectoryService;
+    private final TransactionStorageService transactionStorageService;
+    private final IdGenerator idGenerator;
 
     public TransactionService(TransactionRepository transactionRepository,
             AccountRepository accountRepository,
-            ClientRepository clientRepository,
-            UserRepository userRepository,
-            MessageService messageService) {
+            MessageService messageService,
+            AccountBalanceService accountBalanceService,
+            AccountSequencer accountSequencer,
+            DailyBalanceService dailyBalanceService,
+            RequestIdentityMap requestIdentityMap,
+            RecipientDirectoryService recipientDirectoryService,
+            TransactionStorageService transactionStorageService,
+            IdGenerator idGenerator) {
         this.transactionRepository = transactionRepository;
         this.accountRepository = accountRepository;
-        this.clientRepository = clientRepository;
-        this.userRepository = userRepository;
         this.messageService = messageService;
+        this.accountBalanceService = accountBalanceService;
+        this.accountSequencer = accountSequencer;
+        this.dailyBalanceService = dailyBalanceService;
+        this.requestIdentityMap = requestIdentityMap;
+        this.recipientDirectoryService = recipientDirectoryService;
+        this.transactionStorageService = transactionStorageService;
+        this.idGenerator = idGenerator;
     }
     // ---------------------------------------------------------------//
 
     // find an account by its ID and check if it exists
+    // the controller has usually loaded it for the ownership check already, so this is rarely a round trip
     private Account findAccountById(String accountId) {
-        return accountRepository.findById(accountId)
+        return requestIdentityMap.findAccount(accountId)
                 .orElseThrow(
                         () -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Account not found: " + accountId));
     }
 
-    // save a transaction record
+    // insert a new transaction record and add it to the daily balance of its account
+    // always an insert: a record with a preset ID would turn save into an upsert, which time-series collections reject
     private void saveTransaction(Transaction transaction) {
-        transactionRepository.save(transaction);
+        transactionRepository.insert(transaction);
+        dailyBalanceService.record(transaction);
     }
 
     // get a transaction by its ID
     public Optional<Transaction> getTransactionById(String transactionId) {
+        // generated IDs carry their creation time, in a time-series collection that avoids scanning every bucket
+        if (transactionStorageService.isTimeSeries()) {
+            Optional<Transaction> transaction = IdGenerator.timeOf(transactionId)
+                    .map(time -> LocalDateTime.ofInstant(time, ZoneId.systemDefault()))
+                    .flatMap(time -> transactionRepository.findByTransactionIdAndTimestampBetween(transactionId,
+                            time.minusDays(1), time.plusDays(1)));
+            if (transaction.isPresent()) {
+                return transaction;
+            }
+        }
         return transactionRepository.findById(transactionId);
     }
 
@@ -70,16 +111,58 @@ public class TransactionService {
         return transactionRepository.findByAccountId(accountId, pageable);
     }
 
-    // get all transactions for a specific client with pagination
-    public List<Transaction> getAllTransactions() {
-        return transactionRepository.findAll();
+    // get a page of transactions for a specific account using an opaque cursor instead of an offset
+    // every page costs the same index seek no matter how deep it is, the total is only counted on request
+    public CursorPage<Transaction> getTransactionsByAccountId(String accountId, String cursor, int size,
+            boolean includeTotal) {
+        if (size < 1 || size > 100) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page size must be between 1 and 100");
+        }
+
+        // fetch one extra row to know whether there is a next page
+        Pageable limit = PageRequest.of(0, size + 1);
+        List<Transaction> transactions;
+        if (cursor == null || cursor.isEmpty()) {
+            transactions = transactionRepository.findByAccountIdOrderByTimestampDescTransactionIdDesc(accountId, limit);
+        } else {
+            String[] position = decodeCursor(cursor);
+            transactions = transactionRepository.findPageBefore(accountId, LocalDateTime.parse(position[0]),
+                    position[1], limit);
+        }
+
+        boolean hasMore = transactions.size() > size;
+        List<Transaction> content = hasMore ? transactions.subList(0, size) : transactions;
+        String nextCursor = hasMore ? encodeCursor(content.get(content.size() - 1)) : null;
+        Long totalElements = includeTotal ? transactionRepository.countByAccountId(accountId) : null;
+        return new CursorPage<>(content, nextCursor, hasMore, totalElements);
+    }
+
+    // the cursor is the (timestamp, transactionId) of the last row of a page, base64 encoded
+    private String encodeCursor(Transaction transaction) {
+        String position = transaction.getTimestamp() + "|" + transaction.getTransactionId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String[] decodeCursor(String cursor) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] position = decoded.split("\\|", 2);
+            if (position.length != 2 || position[1].isEmpty()) {
+                throw new IllegalArgumentException("Incomplete cursor");
+            }
+            LocalDateTime.parse(position[0]);
+            return position;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
     }
 
     // handles internal transfers between accounts owned by the same client
     @Transactional
-    public void internalTransfer(String clientId, String fromAccountId, String toAccountId, BigDecimal amount) {
+    public void internalTransfer(String clientId, String fromAccountId, String toAccountId,
+            BigDecimal requestedAmount) {
         // validate the transfer amount
-        ValidationUtil.validatePositiveAmount(amount, "Transfer amount");
+        Money amount = ValidationUtil.validateMoneyAmount(requestedAmount, "Transfer amount");
 
         // check if the source and destination accounts are the same
         if (fromAccountId.equals(toAccountId)) {
@@ -96,84 +179,101 @@ public class TransactionService {
         ValidationUtil.validateAccountOwnership(toAccount.getClientId(), clientId);
 
         // calculate the transfer fee if the source account is a savings account
-        BigDecimal fee = BigDecimal.ZERO;
-        if ("Savings".equalsIgnoreCase(fromAccount.getAccountType())) {
-            fee = amount.multiply(new BigDecimal("0.015")); // 1.5% fee
-        }
-        BigDecimal totalDeduction = amount.add(fee);
+        Money fee = "Savings".equalsIgnoreCase(fromAccount.getAccountType())
+                ? amount.multiply(SAVINGS_FEE_PER_MILLE, 1000, FEE_ROUNDING)
+                : Money.ZERO;
 
-        // validate that the source account has sufficient balance
-        ValidationUtil.validateSufficientBalance(fromAccount.getBalance(), totalDeduction);
+        // apply the transfer on the lanes of both accounts so it is ordered with anything else touching them
+        accountSequencer.onAccounts(List.of(fromAccountId, toAccountId),
+                () -> applyInternalTransfer(fromAccountId, toAccountId, amount, fee));
+    }
 
-        // update balances for both accounts
-        fromAccount.setBalance(fromAccount.getBalance().subtract(totalDeduction));
-        toAccount.setBalance(toAccount.getBalance().add(amount));
+    // moves the money of an internal transfer and records it on both accounts
+    private void applyInternalTransfer(String fromAccountId, String toAccountId, Money amount, Money fee) {
+        Money totalDeduction = amount.plus(fee);
 
-        // save the updated accounts
-        accountRepository.save(fromAccount);
-        accountRepository.save(toAccount);
+        // move the money - the debit is guarded by the balance on the server
+        AccountBalanceService.Transfer transfer = accountBalanceService.transfer(
+                fromAccountId, totalDeduction, toAccountId, amount);
+        Account fromAccount = transfer.source();
+        Account toAccount = transfer.destination();
 
         // create transaction records for both accounts
         LocalDateTime now = LocalDateTime.now();
-        String feeDescription = fee.compareTo(BigDecimal.ZERO) > 0 ? " (Fee: " + fee + ")" : "";
 
-        saveTransaction(Transaction.builder()
+        Transaction.TransactionBuilder debit = Transaction.builder()
                 .accountId(fromAccount.getAccountId())
                 .transactionType("DEBIT")
-                .transactionAmount(totalDeduction)
+                .transactionAmount(totalDeduction.toBigDecimal())
                 .postTransactionBalance(fromAccount.getBalance())
                 .timestamp(now)
-                .transferToAccountId(toAccount.getAccountId())
-                .description("Internal transfer to account " + toAccount.getAccountId() + feeDescription)
-                .build());
+                .transferToAccountId(toAccount.getAccountId());
+        if (fee.isPositive()) {
+            debit.describedAs(TransactionDescription.INTERNAL_TRANSFER_TO_WITH_FEE, fee.toString());
+        } else {
+            debit.describedAs(TransactionDescription.INTERNAL_TRANSFER_TO);
+        }
+        saveTransaction(debit.build());
 
         saveTransaction(Transaction.builder()
                 .accountId(toAccount.getAccountId())
                 .transactionType("CREDIT")
-                .transactionAmount(amount)
+                .transactionAmount(amount.toBigDecimal())
                 .postTransactionBalance(toAccount.getBalance())
                 .timestamp(now)
-                .description("Internal transfer from account " + fromAccount.getAccountId())
+                .describedAs(TransactionDescription.INTERNAL_TRANSFER_FROM, fromAccount.getAccountId())
                 .build());
     }
 
     // handles transfers between different clients
     @Transactional
     public void transferMoney(String senderClientId, String senderAccountId, String recipientPhoneNumber,
-            BigDecimal amount) {
+            BigDecimal requestedAmount) {
         // validate the transfer amount
-        ValidationUtil.validatePositiveAmount(amount, "Transfer amount");
+        Money amount = ValidationUtil.validateMoneyAmount(requestedAmount, "Transfer amount");
 
         // find and validate ownership of the sender's account
         Account senderAccount = findAccountById(senderAccountId);
         ValidationUtil.validateAccountOwnership(senderAccount.getClientId(), senderClientId);
 
-        // validate that the sender's account has sufficient balance
-        ValidationUtil.validateSufficientBalance(senderAccount.getBalance(), amount);
+        // fail fast before resolving the recipient, the debit itself is still guarded on the server
+        ValidationUtil.validateSufficientBalance(senderAccount.getBalance(), amount.toBigDecimal());
 
-        // find the recipient client by phone number
-        Client recipientClient = clientRepository.findByPhoneNumber(recipientPhoneNumber)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Recipient not found"));
-
-        // find the recipient user by client ID
-        User recipientUser = userRepository.findByCardNumber(recipientClient.getClientId())
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Recipient user not found"));
+        // resolve the recipient client, role and account - repeat recipients are answered from memory
+        RecipientDirectoryService.Recipient recipient = recipientDirectoryService.resolve(recipientPhoneNumber);
 
         // validate that the recipient is not an admin
-        ValidationUtil.validateNonAdminTransfer(recipientUser.getRole());
-
-        // find the recipient account by client ID
-        Account recipientAccount = accountRepository.findByClientId(recipientClient.getClientId())
-                .stream().findFirst()
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Recipient account not found"));
+        ValidationUtil.validateNonAdminTransfer(recipient.role());
 
-        // update balances for both accounts
-        senderAccount.setBalance(senderAccount.getBalance().subtract(amount));
-        recipientAccount.setBalance(recipientAccount.getBalance().add(amount));
+        // hold the recipient's notification in the outbox before any money moves
+        // it waits on the credit record, so a crash before that record exists never announces the transfer
+        String recipientAccountId = recipient.accountId();
+        String creditTransactionId = idGenerator.nextIdString();
+        String subject = "Money Received";
+        String body = "You have received a transfer of $" + amount + " from client ID: " + senderClientId;
+        OutboxMessage notification = messageService.holdMessage(recipient.clientId(), subject, body,
+                recipientAccountId, creditTransactionId);
+
+        // apply the transfer on the lanes of both accounts so it is ordered with anything else touching them
+        try {
+            accountSequencer.onAccounts(List.of(senderAccountId, recipientAccountId),
+                    () -> applyTransfer(senderClientId, senderAccountId, recipientAccountId, recipientPhoneNumber,
+                            amount, creditTransactionId));
+        } catch (RuntimeException e) {
+            messageService.discardMessage(notification);
+            throw e;
+        }
+        messageService.releaseMessage(notification);
+    }
 
-        // save the updated accounts
-        accountRepository.save(senderAccount);
-        accountRepository.save(recipientAccount);
+    // moves the money of a transfer between clients and records it on both accounts
+    private void applyTransfer(String senderClientId, String senderAccountId, String recipientAccountId,
+            String recipientPhoneNumber, Money amount, String creditTransactionId) {
+        // move the money - the debit is guarded by the balance on the server
+        AccountBalanceService.Transfer transfer = accountBalanceService.transfer(
+                senderAccountId, amount, recipientAccountId, amount);
+        Account senderAccount = transfer.source();
+        Account recipientAccount = transfer.destination();
 
         // create transaction records for both accounts
         LocalDateTime now = LocalDateTime.now();
@@ -181,51 +281,52 @@ public class TransactionService {
         saveTransaction(Transaction.builder()
                 .accountId(senderAccount.getAccountId())
                 .transactionType("DEBIT")
-                .transactionAmount(amount)
+                .transactionAmount(amount.toBigDecimal())
                 .postTransactionBalance(senderAccount.getBalance())
                 .timestamp(now)
                 .transferToAccountId(recipientAccount.getAccountId())
                 .recipientPhoneNumber(recipientPhoneNumber)
-                .description("Transfer to " + recipientPhoneNumber)
+                .describedAs(TransactionDescription.TRANSFER_TO)
                 .build());
 
         saveTransaction(Transaction.builder()
+                .transactionId(creditTransactionId)
                 .accountId(recipientAccount.getAccountId())
                 .transactionType("CREDIT")
-                .transactionAmount(amount)
+                .transactionAmount(amount.toBigDecimal())
                 .postTransactionBalance(recipientAccount.getBalance())
                 .timestamp(now)
-                .description("Transfer received from client " + senderClientId)
+                .describedAs(TransactionDescription.TRANSFER_FROM_CLIENT, senderClientId)
                 .build());
-
-        // send notification to the recipient
-        String subject = "Money Received";
-        String body = "You have received a transfer of $" + amount + " from client ID: " + senderClientId;
-        messageService.sendMessage(recipientClient.getClientId(), subject, body);
     }
 
     // handles deposits into an account
     @Transactional
-    public void depositMoney(String clientId, String accountId, BigDecimal amount) {
+    public void depositMoney(String clientId, String accountId, BigDecimal requestedAmount) {
         // validate the deposit amount
-        ValidationUtil.validatePositiveAmount(amount, "Deposit amount");
+        Money amount = ValidationUtil.validateMoneyAmount(requestedAmount, "Deposit amount");
 
         // find and validate ownership of the account
         Account account = findAccountById(accountId);
         ValidationUtil.validateAccountOwnership(account.getClientId(), clientId);
 
+        // apply the deposit on the account's lane
+        accountSequencer.onAccount(accountId, () -> applyDeposit(accountId, amount));
+    }
+
+    // credits a deposit and records it on the account
+    private void applyDeposit(String accountId, Money amount) {
         // update the account balance
-        account.setBalance(account.getBalance().add(amount));
-        accountRepository.save(account);
+        Account account = accountBalanceService.credit(accountId, amount);
 
         // create a transaction record for the deposit
         saveTransaction(Transaction.builder()
                 .accountId(account.getAccountId())
                 .transactionType("CREDIT")
-                .transactionAmount(amount)
+                .transactionAmount(amount.toBigDecimal())
                 .postTransactionBalance(account.getBalance())
                 .timestamp(LocalDateTime.now())
-                .description("Deposit")
+                .describedAs(TransactionDescription.DEPOSIT)
                 .build());
     }
 }
\ No newline at end of file
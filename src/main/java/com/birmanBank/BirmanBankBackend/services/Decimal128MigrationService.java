@@ -0,0 +1,230 @@
+package com.birmanBank.BirmanBankBackend.services;
+
+import com.birmanBank.BirmanBankBackend.models.MigrationProgress;
+
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.Decimal128;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ * Decimal128MigrationService rewrites money stored as strings (Spring Data's old BigDecimal mapping) as Decimal128
+ * it walks each collection in _id order in small batches while the application keeps serving requests,
+ * each value is only replaced if it still holds the string that was read, so a concurrent write always wins
+ * the position is saved after every batch, a migration stopped by a restart or an error continues where it left off
+ * mixed _id types (strings, ObjectIds, numbers) are walked one type at a time, since $gt only compares within a type
+ */
+
+@Service
+public class Decimal128MigrationService {
+
+    private static final Logger log = LoggerFactory.getLogger(Decimal128MigrationService.class);
+
+    private static final String NAME = "decimal128-money";
+
+    // the money fields of every collection written before the Decimal128 mapping
+    private record Target(String collection, List<String> fields) {
+    }
+
+    private static final List<Target> TARGETS = List.of(
+            new Target("accounts", List.of("balance")),
+            new Target("transactions", List.of("transactionAmount", "postTransactionBalance")),
+            new Target("loans", List.of("amountRequested", "amountOutstanding")));
+
+    private static final List<String> ID_TYPES = List.of("string", "objectId", "number");
+
+    private record Step(Target target, String idType) {
+    }
+
+    private static final List<Step> STEPS = TARGETS.stream()
+            .flatMap(target -> ID_TYPES.stream().map(idType -> new Step(target, idType)))
+            .toList();
+
+    //-----------------------Constructors----------------------//
+    private final MongoTemplate mongoTemplate;
+    private final int batchSize;
+    private final long pauseMillis;
+    private final boolean autoStart;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "decimal128-migration");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public Decimal128MigrationService(MongoTemplate mongoTemplate,
+            @Value("${bank.migration.decimal128.batch-size:500}") int batchSize,
+            @Value("${bank.migration.decimal128.pause-ms:100}") long pauseMillis,
+            @Value("${bank.migration.decimal128.auto-start:true}") boolean autoStart) {
+        this.mongoTemplate = mongoTemplate;
+        this.batchSize = batchSize;
+        this.pauseMillis = pauseMillis;
+        this.autoStart = autoStart;
+    }
+    //---------------------------------------------------------------//
+
+    private Future<?> running;
+
+    // picks up a migration that was interrupted by a shutdown, or starts it on the first run
+    // a failed migration waits for an admin to start it again
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeOnStartup() {
+        MigrationProgress progress = mongoTemplate.findById(NAME, MigrationProgress.class);
+        if (autoStart && (progress == null || "RUNNING".equals(progress.getStatus()))) {
+            start(false);
+        }
+    }
+
+    // starts or resumes the migration in the background, restart begins again from the first document
+    public synchronized MigrationProgress start(boolean restart) {
+        if (running != null && !running.isDone()) {
+            return getProgress();
+        }
+        MigrationProgress progress = mongoTemplate.findById(NAME, MigrationProgress.class);
+        if (progress == null || restart) {
+            progress = MigrationProgress.builder()
+                    .name(NAME)
+                    .totalSteps(STEPS.size())
+                    .startedAt(LocalDateTime.now())
+                    .build();
+        } else if ("COMPLETED".equals(progress.getStatus())) {
+            return progress;
+        }
+        progress.setStatus("RUNNING");
+        progress.setLastError(null);
+        progress.setUpdatedAt(LocalDateTime.now());
+        MigrationProgress started = mongoTemplate.save(progress);
+        running = executor.submit(() -> run(started));
+        return started;
+    }
+
+    public MigrationProgress getProgress() {
+        MigrationProgress progress = mongoTemplate.findById(NAME, MigrationProgress.class);
+        if (progress == null) {
+            return MigrationProgress.builder().name(NAME).status("NOT_STARTED").totalSteps(STEPS.size()).build();
+        }
+        return progress;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow(); // the saved position is kept, the next start continues from it
+    }
+
+    private void run(MigrationProgress progress) {
+        try {
+            while (progress.getStep() < STEPS.size()) {
+                Step step = STEPS.get(progress.getStep());
+                progress.setCollection(step.target().collection());
+                progress.setIdType(step.idType());
+                if (!migrateBatch(step, progress)) {
+                    progress.setStep(progress.getStep() + 1);
+                    progress.setLastId(null);
+                }
+                progress.setUpdatedAt(LocalDateTime.now());
+                mongoTemplate.save(progress);
+
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                if (pauseMillis > 0) {
+                    Thread.sleep(pauseMillis);
+                }
+            }
+            progress.setStatus("COMPLETED");
+            progress.setCompletedAt(LocalDateTime.now());
+            progress.setCollection(null);
+            progress.setIdType(null);
+            mongoTemplate.save(progress);
+            log.info("Decimal128 migration completed: {} values converted, {} skipped", progress.getConverted(),
+                    progress.getSkipped());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            if (Thread.currentThread().isInterrupted()) {
+                return; // shutting down, the migration is still RUNNING and resumes on the next start
+            }
+            log.error("Decimal128 migration failed in {}: {}", progress.getCollection(), e.getMessage());
+            progress.setStatus("FAILED");
+            progress.setLastError(e.getMessage());
+            progress.setUpdatedAt(LocalDateTime.now());
+            mongoTemplate.save(progress);
+        }
+    }
+
+    // converts the next batch of one step, will return false once the step has no documents left
+    private boolean migrateBatch(Step step, MigrationProgress progress) {
+        Bson filter = progress.getLastId() == null
+                ? Filters.type("_id", step.idType())
+                : Filters.and(Filters.type("_id", step.idType()), Filters.gt("_id", progress.getLastId()));
+        List<Document> batch = mongoTemplate.getCollection(step.target().collection())
+                .find(filter)
+                .projection(Projections.include(step.target().fields()))
+                .sort(Sorts.ascending("_id"))
+                .limit(batchSize)
+                .into(new ArrayList<>());
+        if (batch.isEmpty()) {
+            return false;
+        }
+
+        List<UpdateOneModel<Document>> updates = new ArrayList<>();
+        for (Document document : batch) {
+            for (String field : step.target().fields()) {
+                Object value = document.get(field);
+                if (value == null || value instanceof Decimal128) {
+                    continue;
+                }
+                try {
+                    Decimal128 converted = toDecimal128(value);
+                    // only replaces the value that was read, a concurrent write has already stored Decimal128
+                    updates.add(new UpdateOneModel<>(
+                            Filters.and(Filters.eq("_id", document.get("_id")), Filters.eq(field, value)),
+                            Updates.set(field, converted)));
+                } catch (NumberFormatException | ArithmeticException e) {
+                    log.warn("Cannot convert {}.{} of {} to Decimal128: {}", step.target().collection(), field,
+                            document.get("_id"), value);
+                    progress.setSkipped(progress.getSkipped() + 1);
+                }
+            }
+        }
+        if (!updates.isEmpty()) {
+            long modified = mongoTemplate.getCollection(step.target().collection())
+                    .bulkWrite(updates, new BulkWriteOptions().ordered(false))
+                    .getModifiedCount();
+            progress.setConverted(progress.getConverted() + modified);
+        }
+        progress.setScanned(progress.getScanned() + batch.size());
+        progress.setLastId(batch.get(batch.size() - 1).get("_id"));
+        return true;
+    }
+
+    private static Decimal128 toDecimal128(Object value) {
+        if (value instanceof String text) {
+            return new Decimal128(new BigDecimal(text.trim()));
+        }
+        if (value instanceof Number number) {
+            return new Decimal128(new BigDecimal(number.toString()));
+        }
+        throw new NumberFormatException("not a number");
+    }
+}
@@ -0,0 +1,219 @@
+package com.birmanBank.BirmanBankBackend.services;
+
+import com.birmanBank.BirmanBankBackend.models.IdempotencyRecord;
+import com.birmanBank.BirmanBankBackend.repositories.IdempotencyRecordRepository;
+import com.birmanBank.BirmanBankBackend.utils.LruCache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/*
+ * IdempotencyService makes money-moving endpoints safe to retry
+ * the first request with an Idempotency-Key runs normally and its response is stored,
+ * any retry with the same key from the same user replays that response without running the operation again
+ * stored responses expire through a TTL index, and recently completed ones are also kept in memory
+ * so a retry storm is answered without touching the database
+ * a key is only released when the operation was rejected before it had any effect (a 4xx),
+ * every other outcome is stored, including server errors, since the money may already have moved
+ * a claim is never taken over - once it is older than the claim timeout the outcome is reported as unknown,
+ * the client checks the account and retries with a new key
+ * the request body is fingerprinted, reusing a key for a different request is rejected with 422
+ */
+
+@Service
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    private static final String IN_PROGRESS = "IN_PROGRESS";
+    private static final String COMPLETED = "COMPLETED";
+    private static final int MAX_KEY_LENGTH = 255;
+
+    //-----------------------Constructors----------------------//
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final Duration claimTimeout;
+    private final LruCache<String, StoredResponse> recentResponses;
+
+    public IdempotencyService(IdempotencyRecordRepository idempotencyRecordRepository, MongoTemplate mongoTemplate,
+            ObjectMapper objectMapper,
+            @Value("${bank.idempotency.ttl:24h}") Duration ttl,
+            @Value("${bank.idempotency.claim-timeout:30s}") Duration claimTimeout,
+            @Value("${bank.idempotency.cache-size:10000}") int cacheSize) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.mongoTemplate = mongoTemplate;
+        // map keys are sorted so the same body always has the same fingerprint
+        this.objectMapper = objectMapper.copy().enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+        this.ttl = ttl;
+        this.claimTimeout = claimTimeout;
+        this.recentResponses = new LruCache<>(cacheSize, ttl);
+    }
+    //---------------------------------------------------------------//
+
+    private record StoredResponse(String requestFingerprint, int statusCode, Object body) {
+    }
+
+    // stored records are removed by MongoDB once they are older than the configured time to live
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureExpiryIndex() {
+        mongoTemplate.indexOps(IdempotencyRecord.class)
+                .ensureIndex(new Index().on("createdAt", Sort.Direction.ASC).expire(ttl));
+    }
+
+    // runs the action once per idempotency key, user and operation
+    // requests without a key are not deduplicated
+    public ResponseEntity<?> execute(String idempotencyKey, String cardNumber, String operation, Object request,
+            Supplier<ResponseEntity<?>> action) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return action.get();
+        }
+        if (idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    HEADER + " cannot be longer than " + MAX_KEY_LENGTH + " characters");
+        }
+
+        String requestHash = hash(cardNumber + ":" + operation + ":" + idempotencyKey);
+        String requestFingerprint = fingerprint(request);
+
+        // hot retries are answered from memory
+        StoredResponse recent = recentResponses.get(requestHash);
+        if (recent != null) {
+            return replay(recent, requestFingerprint);
+        }
+
+        // claim the key, the unique _id lets exactly one request win
+        LocalDateTime now = LocalDateTime.now();
+        IdempotencyRecord record = IdempotencyRecord.builder()
+                .requestHash(requestHash)
+                .requestFingerprint(requestFingerprint)
+                .status(IN_PROGRESS)
+                .claimedAt(now)
+                .createdAt(now)
+                .build();
+        try {
+            idempotencyRecordRepository.insert(record);
+        } catch (DuplicateKeyException e) {
+            IdempotencyRecord existing = idempotencyRecordRepository.findById(requestHash).orElse(null);
+            if (existing != null && COMPLETED.equals(existing.getStatus())) {
+                StoredResponse stored = new StoredResponse(existing.getRequestFingerprint(), existing.getStatusCode(),
+                        existing.getResponseBody());
+                recentResponses.put(requestHash, stored);
+                return replay(stored, requestFingerprint);
+            }
+            if (existing != null) {
+                checkFingerprint(existing.getRequestFingerprint(), requestFingerprint);
+            }
+            // the first request may still be running, or may have died after moving the money - never run it again
+            if (existing != null && existing.getClaimedAt() != null
+                    && existing.getClaimedAt().isBefore(now.minus(claimTimeout))) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "The outcome of the request with this "
+                        + HEADER + " is unknown, check the account before retrying with a new key");
+            }
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "A request with this " + HEADER + " is still being processed");
+        }
+
+        ResponseEntity<?> response;
+        try {
+            response = action.get();
+        } catch (ResponseStatusException e) {
+            if (e.getStatusCode().is4xxClientError()) {
+                // rejected before anything changed, the client may fix the cause and retry with the same key
+                release(record);
+                throw e;
+            }
+            response = unknownOutcome();
+        } catch (RuntimeException e) {
+            response = unknownOutcome();
+        }
+
+        if (response.getStatusCode().is4xxClientError()) {
+            release(record);
+            return response;
+        }
+
+        // everything else is final, a server error may have happened after the money moved
+        mongoTemplate.updateFirst(ownClaim(record),
+                new Update().set("status", COMPLETED)
+                        .set("statusCode", response.getStatusCode().value())
+                        .set("responseBody", response.getBody()),
+                IdempotencyRecord.class);
+        recentResponses.put(requestHash,
+                new StoredResponse(requestFingerprint, response.getStatusCode().value(), response.getBody()));
+        return response;
+    }
+
+    // the operation failed somewhere that may be after its side effects, the key must not run it again
+    private ResponseEntity<?> unknownOutcome() {
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("error",
+                "The request failed and its outcome is unknown, check the account before retrying with a new key"));
+    }
+
+    private void release(IdempotencyRecord record) {
+        mongoTemplate.remove(ownClaim(record), IdempotencyRecord.class);
+    }
+
+    private Query ownClaim(IdempotencyRecord record) {
+        return Query.query(Criteria.where("requestHash").is(record.getRequestHash())
+                .and("status").is(IN_PROGRESS)
+                .and("claimedAt").is(record.getClaimedAt()));
+    }
+
+    private ResponseEntity<?> replay(StoredResponse stored, String requestFingerprint) {
+        checkFingerprint(stored.requestFingerprint(), requestFingerprint);
+        return ResponseEntity.status(stored.statusCode())
+                .header("Idempotent-Replayed", "true")
+                .body(stored.body());
+    }
+
+    // records stored before fingerprints were kept have none and match any request
+    private void checkFingerprint(String stored, String requestFingerprint) {
+        if (stored != null && !stored.equals(requestFingerprint)) {
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                    HEADER + " was already used for a different request");
+        }
+    }
+
+    private String fingerprint(Object request) {
+        try {
+            return hash(objectMapper.writeValueAsString(request));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Request body cannot be serialized", e);
+        }
+    }
+
+    private String hash(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
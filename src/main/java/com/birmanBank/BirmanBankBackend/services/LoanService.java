@@ -2,37 +2,61 @@ package com.birmanBank.BirmanBankBackend.services;
 
 import com.birmanBank.BirmanBankBackend.models.Loan;
 import com.birmanBank.BirmanBankBackend.models.Account;
+import com.birmanBank.BirmanBankBackend.models.Money;
 import com.birmanBank.BirmanBankBackend.models.Transaction;
-import com.birmanBank.BirmanBankBackend.repositories.AccountRepository;
+import com.birmanBank.BirmanBankBackend.models.TransactionDescription;
 import com.birmanBank.BirmanBankBackend.repositories.LoanRepository;
 import com.birmanBank.BirmanBankBackend.repositories.TransactionRepository;
+import com.birmanBank.BirmanBankBackend.services.ClientServices.AccountBalanceService;
+import com.birmanBank.BirmanBankBackend.services.ClientServices.AccountDesignationService;
+import com.birmanBank.BirmanBankBackend.services.ClientServices.AccountSequencer;
+import com.birmanBank.BirmanBankBackend.services.ClientServices.DailyBalanceService;
+import com.birmanBank.BirmanBankBackend.utils.LegacyDecimals;
 import com.birmanBank.BirmanBankBackend.utils.ValidationUtil;
 
 import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.http.HttpStatus;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.LocalDateTime;
 import java.util.List;
 
 @Service
 @RequiredArgsConstructor
 public class LoanService {
+    private static final Logger log = LoggerFactory.getLogger(LoanService.class);
+
+    // return the post-update loan so the caller sees the decision or the new outstanding amount
+    private static final FindAndModifyOptions RETURN_NEW = FindAndModifyOptions.options().returnNew(true);
+
     private final LoanRepository loanRepository;
-    private final AccountRepository accountRepository;
     private final TransactionRepository transactionRepository;
+    private final AccountBalanceService accountBalanceService;
+    private final AccountSequencer accountSequencer;
+    private final DailyBalanceService dailyBalanceService;
+    private final AccountDesignationService accountDesignationService;
+    private final MongoTemplate mongoTemplate;
 
     // process a user's request for loan.
     public Loan requestLoan(String userCard, BigDecimal amount) {
         ValidationUtil.validateCardNumber(userCard);
-        ValidationUtil.validatePositiveAmount(amount, "Loan amount");
+        Money requested = ValidationUtil.validateMoneyAmount(amount, "Loan amount");
 
         Loan loan = Loan.builder()
                 .userCardNumber(userCard)
-                .amountRequested(amount)
-                .amountOutstanding(amount)
+                .amountRequested(requested.toBigDecimal())
+                .amountOutstanding(requested.toBigDecimal())
                 .status("PENDING")
                 .loanDate(LocalDateTime.now())
                 .build();
@@ -55,37 +79,52 @@ public class LoanService {
         ValidationUtil.validateCardNumber(adminCard);
         ValidationUtil.validateNotEmpty(loanId, "Loan ID");
 
-        Loan loan = loanRepository.findById(loanId)
+        Loan pending = loanRepository.findById(loanId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Loan not found"));
 
-        // get user's default balance account.
-        Account acct = accountRepository.findByClientId(loan.getUserCardNumber())
-                .stream()
-                .filter(a -> "Chequing".equalsIgnoreCase(a.getAccountType()))
-                .findFirst()
+        // get user's default deposit account.
+        Account acct = accountDesignationService.findDefaultDepositAccount(pending.getUserCardNumber())
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
-                        "No Chequing account for user " + loan.getUserCardNumber()));
-
-        // credit balance.
-        acct.setBalance(acct.getBalance().add(loan.getAmountRequested()));
-        accountRepository.save(acct);
-
-        // save transaction.
-        Transaction transaction = Transaction.builder()
-                .accountId(acct.getAccountId())
-                .transactionType("CREDIT")
-                .transactionAmount(loan.getAmountRequested())
-                .postTransactionBalance(acct.getBalance())
-                .timestamp(LocalDateTime.now())
-                .description("Loan approved and disbursed")
-                .build();
-        transactionRepository.save(transaction);
+                        "No deposit account for user " + pending.getUserCardNumber()));
+
+        // claim the decision first, only one of two concurrent approvals gets the PENDING loan and pays it out.
+        LocalDateTime decidedAt = LocalDateTime.now();
+        Loan loan = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("loanId").is(loanId).and("status").is("PENDING")),
+                new Update().set("status", "AWAITING_PAYMENT").set("decidedAt", decidedAt)
+                        .set("decisionByAdmin", adminCard),
+                RETURN_NEW, Loan.class);
+        if (loan == null) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Loan has already been decided");
+        }
 
-        // update loan status.
-        loan.setStatus("AWAITING_PAYMENT");
-        loan.setDecidedAt(LocalDateTime.now());
-        loan.setDecisionByAdmin(adminCard);
-        return loanRepository.save(loan);
+        // credit balance and save transaction on the account's lane.
+        String accountId = acct.getAccountId();
+        Money disbursement = amountOf(loan.getAmountRequested());
+        accountSequencer.onAccount(accountId, () -> {
+            Account credited;
+            try {
+                credited = accountBalanceService.credit(accountId, disbursement);
+            } catch (RuntimeException e) {
+                // nothing was paid out, hand the loan back to the pending queue.
+                mongoTemplate.updateFirst(
+                        Query.query(Criteria.where("loanId").is(loanId).and("status").is("AWAITING_PAYMENT")
+                                .and("decisionByAdmin").is(adminCard).and("decidedAt").is(decidedAt)),
+                        new Update().set("status", "PENDING").unset("decidedAt").unset("decisionByAdmin"),
+                        Loan.class);
+                throw e;
+            }
+            // the loan is paid out from here on, it stays approved even if the record cannot be written.
+            recordTransaction(loanId, Transaction.builder()
+                    .accountId(accountId)
+                    .transactionType("CREDIT")
+                    .transactionAmount(disbursement.toBigDecimal())
+                    .postTransactionBalance(credited.getBalance())
+                    .timestamp(LocalDateTime.now())
+                    .describedAs(TransactionDescription.LOAN_DISBURSED)
+                    .build());
+        });
+        return loan;
     }
 
     // deny loan.
@@ -93,54 +132,104 @@ public class LoanService {
         ValidationUtil.validateCardNumber(adminCard);
         ValidationUtil.validateNotEmpty(loanId, "Loan ID");
 
-        Loan loan = loanRepository.findById(loanId)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Loan not found"));
-        loan.setStatus("DENIED");
-        loan.setDecidedAt(LocalDateTime.now());
-        loan.setDecisionByAdmin(adminCard);
-        loanRepository.save(loan);
+        // only a PENDING loan can be denied, an approval that already paid out is never overwritten.
+        Loan loan = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("loanId").is(loanId).and("status").is("PENDING")),
+                new Update().set("status", "DENIED").set("decidedAt", LocalDateTime.now())
+                        .set("decisionByAdmin", adminCard),
+                Loan.class);
+        if (loan == null) {
+            if (!loanRepository.existsById(loanId)) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Loan not found");
+            }
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Loan has already been decided");
+        }
     }
 
     // loan payment complete.
-    public Loan payDownLoan(String loanId, BigDecimal payment) {
+    public Loan payDownLoan(String loanId, BigDecimal requestedPayment) {
         ValidationUtil.validateNotEmpty(loanId, "Loan ID");
-        ValidationUtil.validatePositiveAmount(payment, "Payment amount");
+        Money payment = ValidationUtil.validateMoneyAmount(requestedPayment, "Payment amount");
 
-        Loan loan = loanRepository.findById(loanId)
+        Loan current = loanRepository.findById(loanId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Loan not found"));
+        if (!"AWAITING_PAYMENT".equals(current.getStatus())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Loan is not awaiting payment");
+        }
 
-        // get user's default balance account.
-        Account acct = accountRepository.findByClientId(loan.getUserCardNumber())
-                .stream()
-                .filter(a -> "Chequing".equalsIgnoreCase(a.getAccountType()))
-                .findFirst()
+        // get user's default deposit account.
+        Account acct = accountDesignationService.findDefaultDepositAccount(current.getUserCardNumber())
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
-                        "No Chequing account for user " + loan.getUserCardNumber()));
-
-        // sufficient balance check.
-        ValidationUtil.validateSufficientBalance(acct.getBalance(), payment);
-
-        // debit balance.
-        acct.setBalance(acct.getBalance().subtract(payment));
-        accountRepository.save(acct);
-
-        // save transaction.
-        Transaction transaction = Transaction.builder()
-                .accountId(acct.getAccountId())
-                .transactionType("DEBIT")
-                .transactionAmount(payment)
-                .postTransactionBalance(acct.getBalance())
-                .timestamp(LocalDateTime.now())
-                .description("Loan repayment")
-                .build();
-        transactionRepository.save(transaction);
+                        "No deposit account for user " + current.getUserCardNumber()));
 
-        // update loan.
-        BigDecimal remaining = loan.getAmountOutstanding().subtract(payment);
-        loan.setAmountOutstanding(remaining.max(BigDecimal.ZERO));
-        if (remaining.compareTo(BigDecimal.ZERO) <= 0) {
-            loan.setStatus("PAID");
+        // take the payment off the loan first, guarded so concurrent payments can never pay more than is owed.
+        Loan loan = reduceOutstanding(loanId, payment);
+        if (loan == null && LegacyDecimals.convertStrings(mongoTemplate, Loan.class,
+                Criteria.where("loanId").is(loanId), "amountOutstanding")) {
+            loan = reduceOutstanding(loanId, payment);
         }
-        return loanRepository.save(loan);
+        if (loan == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Payment exceeds the outstanding amount or the loan is no longer awaiting payment");
+        }
+
+        // debit balance (guarded by a sufficient balance check on the server) and save transaction on the account's lane.
+        String accountId = acct.getAccountId();
+        accountSequencer.onAccount(accountId, () -> {
+            Account debited;
+            try {
+                debited = accountBalanceService.debit(accountId, payment);
+            } catch (RuntimeException e) {
+                // the money did not move, put the payment back on the loan.
+                mongoTemplate.updateFirst(Query.query(Criteria.where("loanId").is(loanId)),
+                        new Update().inc("amountOutstanding", payment.toBigDecimal()), Loan.class);
+                throw e;
+            }
+            // the payment is taken from here on, it stays on the loan even if the record cannot be written.
+            recordTransaction(loanId, Transaction.builder()
+                    .accountId(accountId)
+                    .transactionType("DEBIT")
+                    .transactionAmount(payment.toBigDecimal())
+                    .postTransactionBalance(debited.getBalance())
+                    .timestamp(LocalDateTime.now())
+                    .describedAs(TransactionDescription.LOAN_REPAYMENT)
+                    .build());
+        });
+
+        // the payment that brings the outstanding amount to zero closes the loan.
+        if (!amountOf(loan.getAmountOutstanding()).isPositive()) {
+            Loan paid = mongoTemplate.findAndModify(
+                    Query.query(Criteria.where("loanId").is(loanId).and("status").is("AWAITING_PAYMENT")
+                            .and("amountOutstanding").lte(BigDecimal.ZERO)),
+                    new Update().set("status", "PAID"), RETURN_NEW, Loan.class);
+            if (paid != null) {
+                loan = paid;
+            }
+        }
+        return loan;
+    }
+
+    // the balance has already changed, so a failed write is logged with the loan instead of undoing the loan update
+    private void recordTransaction(String loanId, Transaction transaction) {
+        try {
+            transactionRepository.insert(transaction);
+            dailyBalanceService.record(transaction);
+        } catch (DataAccessException e) {
+            log.error("Loan {} moved {} on account {} but its transaction could not be written: {}", loanId,
+                    transaction.getTransactionAmount(), transaction.getAccountId(), e.getMessage());
+        }
+    }
+
+    private Loan reduceOutstanding(String loanId, Money payment) {
+        return mongoTemplate.findAndModify(
+                Query.query(Criteria.where("loanId").is(loanId).and("status").is("AWAITING_PAYMENT")
+                        .and("amountOutstanding").gte(payment.toBigDecimal())),
+                new Update().inc("amountOutstanding", payment.negate().toBigDecimal()),
+                RETURN_NEW, Loan.class);
+    }
+
+    // loans requested before amounts were kept in whole cents are rounded to the nearest cent
+    private Money amountOf(BigDecimal stored) {
+        return Money.of(stored, RoundingMode.HALF_EVEN);
     }
 }
\ No newline at end of file
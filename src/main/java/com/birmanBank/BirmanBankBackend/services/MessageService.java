@@ -1,44 +1,117 @@
 package com.birmanBank.BirmanBankBackend.services;
 
 import com.birmanBank.BirmanBankBackend.models.InboxMessage;
+import com.birmanBank.BirmanBankBackend.models.OutboxMessage;
 import com.birmanBank.BirmanBankBackend.repositories.InboxMessageRepository;
+import com.birmanBank.BirmanBankBackend.repositories.OutboxMessageRepository;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
+/*
+ * messages are not written to the inbox directly
+ * they go to the notification outbox as part of the operation that caused them,
+ * and the OutboxDispatcher delivers them to the inbox in batches in the background
+ * without a MongoDB transaction a message is held before the operation and released after it,
+ * so a message is never lost after the operation and never delivered for an operation that did not happen
+ */
+
 @Service
 public class MessageService {
 
     //-----------------------Constructors----------------------//
     private final InboxMessageRepository inboxMessageRepository;
+    private final OutboxMessageRepository outboxMessageRepository;
+    private final MongoTemplate mongoTemplate;
 
-    public MessageService(InboxMessageRepository inboxMessageRepository) {
+    public MessageService(InboxMessageRepository inboxMessageRepository,
+            OutboxMessageRepository outboxMessageRepository, MongoTemplate mongoTemplate) {
         this.inboxMessageRepository = inboxMessageRepository;
+        this.outboxMessageRepository = outboxMessageRepository;
+        this.mongoTemplate = mongoTemplate;
     }
     //---------------------------------------------------------------//
 
     public void sendMessage(String recipientId, String subject, String body) {
-        InboxMessage message = InboxMessage.builder()
-                .recipientId(recipientId)
-                .senderId(null) // System message
-                .subject(subject)
-                .body(body)
-                .timestamp(LocalDateTime.now())
-                .build();
-        inboxMessageRepository.save(message);
+        outboxMessageRepository.insert(outboxMessage(recipientId, subject, body, null));
+    }
+
+    // queues a message that is not delivered until it is released, written before the operation it announces
+    // the message names the transaction record the operation will write and its account, the dispatcher settles it
+    // if we crash
+    public OutboxMessage holdMessage(String recipientId, String subject, String body, String awaitedAccountId,
+            String awaitedTransactionId) {
+        return outboxMessageRepository.insert(heldMessage(recipientId, subject, body, awaitedAccountId,
+                awaitedTransactionId));
+    }
+
+    // holds many messages built with heldMessage with a single insert
+    public List<OutboxMessage> holdMessages(List<OutboxMessage> messages) {
+        return messages.isEmpty() ? messages : outboxMessageRepository.insert(messages);
+    }
+
+    // the operation completed, the message can be delivered
+    public void releaseMessage(OutboxMessage held) {
+        held.setStatus("PENDING");
+        held.setNextAttemptAt(LocalDateTime.now());
+        outboxMessageRepository.save(held);
+    }
+
+    // releases many held messages with a single update
+    public void releaseMessages(List<OutboxMessage> held) {
+        if (!held.isEmpty()) {
+            mongoTemplate.updateMulti(
+                    Query.query(Criteria.where("outboxId").in(held.stream().map(OutboxMessage::getOutboxId).toList())
+                            .and("status").is("HELD")),
+                    new Update().set("status", "PENDING").set("nextAttemptAt", LocalDateTime.now()),
+                    OutboxMessage.class);
+        }
+    }
+
+    // the operation failed, the message is dropped
+    public void discardMessage(OutboxMessage held) {
+        outboxMessageRepository.deleteById(held.getOutboxId());
+    }
+
+    public void discardMessages(List<OutboxMessage> held) {
+        if (!held.isEmpty()) {
+            outboxMessageRepository.deleteAllById(held.stream().map(OutboxMessage::getOutboxId).toList());
+        }
     }
 
     public void sendRegistrationMessage(String recipientId, String subject, String body, String targetClientId) {
-        InboxMessage message = InboxMessage.builder()
+        outboxMessageRepository.insert(outboxMessage(recipientId, subject, body, targetClientId));
+    }
+
+    // builds a pending system message for the outbox
+    public static OutboxMessage outboxMessage(String recipientId, String subject, String body, String targetClientId) {
+        LocalDateTime now = LocalDateTime.now();
+        return OutboxMessage.builder()
                 .recipientId(recipientId)
-                .senderId(null)
+                .senderId(null) // System message
                 .subject(subject)
                 .body(body)
-                .timestamp(LocalDateTime.now())
                 .targetClientId(targetClientId)
+                .status("PENDING")
+                .nextAttemptAt(now)
+                .createdAt(now)
                 .build();
-        inboxMessageRepository.save(message);
+    }
+
+    // builds a system message that waits in the outbox until the transaction record it names is written
+    public static OutboxMessage heldMessage(String recipientId, String subject, String body,
+            String awaitedAccountId, String awaitedTransactionId) {
+        OutboxMessage message = outboxMessage(recipientId, subject, body, null);
+        message.setStatus("HELD");
+        message.setAwaitedAccountId(awaitedAccountId);
+        message.setAwaitedTransactionId(awaitedTransactionId);
+        return message;
     }
 
     public Optional<InboxMessage> getMessageById(String messageId) {
@@ -48,4 +121,4 @@ public class MessageService {
     public void saveMessage(InboxMessage message) {
         inboxMessageRepository.save(message);
     }
-}
\ No newline at end of file
+}
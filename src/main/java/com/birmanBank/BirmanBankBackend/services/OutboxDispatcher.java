@@ -0,0 +1,212 @@
+package com.birmanBank.BirmanBankBackend.services;
+
+import com.birmanBank.BirmanBankBackend.models.InboxMessage;
+import com.birmanBank.BirmanBankBackend.models.OutboxMessage;
+import com.birmanBank.BirmanBankBackend.repositories.OutboxMessageRepository;
+import com.birmanBank.BirmanBankBackend.repositories.TransactionRepository;
+import com.birmanBank.BirmanBankBackend.utils.IdGenerator;
+
+import com.mongodb.bulk.BulkWriteError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * OutboxDispatcher delivers queued notifications from the outbox to the inbox
+ * due messages are drained in batches, each batch is one unordered insertMany into inbox_messages
+ * the inbox message reuses the outbox ID, so a batch that is delivered twice (e.g. a crash before the
+ * outbox cleanup) only produces duplicate key errors, which count as delivered
+ * failed messages are retried with exponential backoff until they run out of attempts
+ * a HELD message whose request crashed is released if its transaction record exists and dropped if it does not,
+ * the record is looked up by its account and the time window of its ID
+ */
+
+@Component
+public class OutboxDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxDispatcher.class);
+    private static final int DUPLICATE_KEY = 11000;
+
+    //-----------------------Constructors----------------------//
+    private final OutboxMessageRepository outboxMessageRepository;
+    private final TransactionRepository transactionRepository;
+    private final MongoTemplate mongoTemplate;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration holdTimeout;
+
+    public OutboxDispatcher(OutboxMessageRepository outboxMessageRepository,
+            TransactionRepository transactionRepository, MongoTemplate mongoTemplate,
+            @Value("${bank.outbox.batch-size:500}") int batchSize,
+            @Value("${bank.outbox.max-attempts:10}") int maxAttempts,
+            @Value("${bank.outbox.hold-timeout:5m}") Duration holdTimeout) {
+        this.outboxMessageRepository = outboxMessageRepository;
+        this.transactionRepository = transactionRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.holdTimeout = holdTimeout;
+    }
+    //---------------------------------------------------------------//
+
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder failedAttempts = new LongAdder();
+    private final AtomicLong lastBatchLagMillis = new AtomicLong();
+
+    // dispatch counters and how far the outbox is behind
+    public record OutboxStats(long pending, long failed, long delivered, long failedAttempts,
+            long oldestPendingAgeMillis, long lastBatchLagMillis) {
+    }
+
+    // drains everything that is due, one batch at a time
+    @Scheduled(fixedDelayString = "${bank.outbox.poll-interval-ms:500}")
+    public void dispatchPending() {
+        List<OutboxMessage> batch;
+        do {
+            batch = outboxMessageRepository.findByStatusAndNextAttemptAtLessThanEqualOrderByNextAttemptAtAsc(
+                    "PENDING", LocalDateTime.now(), PageRequest.of(0, batchSize));
+            if (!batch.isEmpty()) {
+                dispatch(batch);
+            }
+        } while (batch.size() == batchSize);
+    }
+
+    // a request releases or discards its HELD message within milliseconds, one still held after the timeout
+    // belongs to a request that died between the outbox insert and the end of its operation
+    @Scheduled(fixedDelayString = "${bank.outbox.hold-sweep-interval-ms:60000}")
+    public void settleHeld() {
+        List<OutboxMessage> batch;
+        do {
+            batch = outboxMessageRepository.findByStatusAndCreatedAtLessThan("HELD",
+                    LocalDateTime.now().minus(holdTimeout), PageRequest.of(0, batchSize));
+            for (OutboxMessage message : batch) {
+                if (awaitedTransactionExists(message)) {
+                    message.setStatus("PENDING");
+                    message.setNextAttemptAt(LocalDateTime.now());
+                    outboxMessageRepository.save(message);
+                } else {
+                    log.warn("Dropping held outbox message {}, its operation never completed", message.getOutboxId());
+                    outboxMessageRepository.deleteById(message.getOutboxId());
+                }
+            }
+        } while (batch.size() == batchSize);
+    }
+
+    // generated IDs carry their creation time, with the account that bounds the lookup to a few buckets of a
+    // time-series collection, which has no _id index
+    private boolean awaitedTransactionExists(OutboxMessage message) {
+        String transactionId = message.getAwaitedTransactionId();
+        if (transactionId == null) {
+            return false;
+        }
+        Optional<LocalDateTime> time = IdGenerator.timeOf(transactionId)
+                .map(instant -> LocalDateTime.ofInstant(instant, ZoneId.systemDefault()));
+        if (message.getAwaitedAccountId() == null || time.isEmpty()) {
+            return transactionRepository.existsById(transactionId); // held before the account was recorded
+        }
+        return transactionRepository.existsByAccountIdAndTransactionIdAndTimestampBetween(
+                message.getAwaitedAccountId(), transactionId, time.get().minusDays(1), time.get().plusDays(1));
+    }
+
+    public OutboxStats getStats() {
+        long oldestPendingAgeMillis = outboxMessageRepository.findFirstByStatusOrderByCreatedAtAsc("PENDING")
+                .map(message -> Duration.between(message.getCreatedAt(), LocalDateTime.now()).toMillis())
+                .orElse(0L);
+        return new OutboxStats(
+                outboxMessageRepository.countByStatus("PENDING"),
+                outboxMessageRepository.countByStatus("FAILED"),
+                delivered.sum(),
+                failedAttempts.sum(),
+                oldestPendingAgeMillis,
+                lastBatchLagMillis.get());
+    }
+
+    private void dispatch(List<OutboxMessage> batch) {
+        lastBatchLagMillis.set(Duration.between(batch.get(0).getCreatedAt(), LocalDateTime.now()).toMillis());
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, InboxMessage.class);
+        batch.forEach(message -> bulk.insert(toInboxMessage(message)));
+
+        // index in the batch -> reason it was not delivered
+        Map<Integer, String> failures = new HashMap<>();
+        try {
+            bulk.execute();
+        } catch (BulkOperationException e) {
+            for (BulkWriteError error : e.getErrors()) {
+                if (error.getCode() != DUPLICATE_KEY) {
+                    failures.put(error.getIndex(), error.getMessage());
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Outbox batch of {} messages could not be delivered", batch.size(), e);
+            for (int i = 0; i < batch.size(); i++) {
+                failures.put(i, e.getMessage());
+            }
+        }
+
+        List<String> deliveredIds = new ArrayList<>(batch.size());
+        List<OutboxMessage> retries = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            OutboxMessage message = batch.get(i);
+            String error = failures.get(i);
+            if (error == null) {
+                deliveredIds.add(message.getOutboxId());
+            } else {
+                scheduleRetry(message, error);
+                retries.add(message);
+            }
+        }
+
+        if (!deliveredIds.isEmpty()) {
+            outboxMessageRepository.deleteAllById(deliveredIds);
+            delivered.add(deliveredIds.size());
+        }
+        if (!retries.isEmpty()) {
+            outboxMessageRepository.saveAll(retries);
+            failedAttempts.add(retries.size());
+        }
+    }
+
+    // backs the message off exponentially, 1s, 2s, 4s ... capped at 5 minutes
+    private void scheduleRetry(OutboxMessage message, String error) {
+        int attempts = message.getAttempts() + 1;
+        message.setAttempts(attempts);
+        message.setLastError(error);
+        if (attempts >= maxAttempts) {
+            message.setStatus("FAILED");
+            log.error("Outbox message {} failed after {} attempts: {}", message.getOutboxId(), attempts, error);
+            return;
+        }
+        long backoffSeconds = Math.min(1L << Math.min(attempts - 1, 30), 300);
+        message.setNextAttemptAt(LocalDateTime.now().plusSeconds(backoffSeconds));
+    }
+
+    private InboxMessage toInboxMessage(OutboxMessage message) {
+        return InboxMessage.builder()
+                .messageId(message.getOutboxId())
+                .recipientId(message.getRecipientId())
+                .senderId(message.getSenderId())
+                .subject(message.getSubject())
+                .body(message.getBody())
+                .timestamp(message.getCreatedAt())
+                .targetClientId(message.getTargetClientId())
+                .build();
+    }
+}
@@ -0,0 +1,127 @@
+package com.birmanBank.BirmanBankBackend.services;
+
+import com.birmanBank.BirmanBankBackend.utils.LatencyHistogram;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * PasswordHashingService runs every BCrypt hash and verification on a small dedicated pool
+ * the pool has one thread per core and a bounded queue, so a login burst can only ever use those cores
+ * once the queue is full new requests are turned away with 429 and a Retry-After header instead of
+ * piling up on the request threads and starving every other endpoint
+ * hash and verify latencies, including the time spent queued, are kept in histograms
+ */
+
+@Service
+public class PasswordHashingService {
+
+    //-----------------------Constructors----------------------//
+    private final ThreadPoolExecutor executor;
+    private final long retryAfterSeconds;
+
+    public PasswordHashingService(@Value("${bank.auth.hash-threads:0}") int threads,
+            @Value("${bank.auth.hash-queue-size:64}") int queueSize,
+            @Value("${bank.auth.hash-retry-after-seconds:1}") long retryAfterSeconds) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+    //---------------------------------------------------------------//
+
+    private final LatencyHistogram hashLatency = new LatencyHistogram();
+    private final LatencyHistogram verifyLatency = new LatencyHistogram();
+    private final LongAdder rejected = new LongAdder();
+
+    // pool usage, rejections and latency histograms
+    public record HashingStats(int poolSize, int active, int queued, long rejected,
+            LatencyHistogram.Snapshot hash, LatencyHistogram.Snapshot verify) {
+    }
+
+    public String hash(Callable<String> hashing) {
+        return run(hashing, hashLatency);
+    }
+
+    public boolean verify(Callable<Boolean> verification) {
+        return run(verification, verifyLatency);
+    }
+
+    public HashingStats getStats() {
+        return new HashingStats(executor.getCorePoolSize(), executor.getActiveCount(), executor.getQueue().size(),
+                rejected.sum(), hashLatency.snapshot(), verifyLatency.snapshot());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    // runs the work on the pool and waits for it, the caller's thread does no hashing itself
+    private <T> T run(Callable<T> work, LatencyHistogram histogram) {
+        long start = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(work);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new TooManyRequestsException("Too many login attempts in progress, try again shortly",
+                    retryAfterSeconds);
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for password hashing", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        } finally {
+            histogram.record(System.nanoTime() - start);
+        }
+    }
+
+    // a 429 that tells the client when to retry
+    public static class TooManyRequestsException extends ResponseStatusException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long retryAfterSeconds;
+
+        public TooManyRequestsException(String reason, long retryAfterSeconds) {
+            super(HttpStatus.TOO_MANY_REQUESTS, reason);
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            HttpHeaders headers = new HttpHeaders();
+            headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+            return headers;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.birmanBank.BirmanBankBackend.services;
+
+import com.birmanBank.BirmanBankBackend.models.RefreshToken;
+import com.birmanBank.BirmanBankBackend.utils.JwtUtil;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HexFormat;
+
+/*
+ * RefreshTokenService issues and rotates the long lived refresh tokens handed out at login
+ * a refresh token is a random opaque string, only its hash is stored, together with the role, activation state
+ * and epoch of the user at login, so refreshing needs one indexed lookup and no password verification
+ * every refresh removes the presented token and issues a new one, so each refresh token can be used only once
+ * tokens stop working when they expire (a TTL index removes them) or when the user's epoch is bumped,
+ * which also deletes them through TokenEpochService
+ */
+
+@Service
+public class RefreshTokenService {
+
+    private static final int TOKEN_BYTES = 32;
+
+    //-----------------------Constructors----------------------//
+    private final MongoTemplate mongoTemplate;
+    private final JwtUtil jwtUtil;
+    private final TokenEpochService tokenEpochService;
+    private final Duration refreshTokenTtl;
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    public RefreshTokenService(MongoTemplate mongoTemplate, JwtUtil jwtUtil, TokenEpochService tokenEpochService,
+            @Value("${bank.auth.refresh-token-ttl:14d}") Duration refreshTokenTtl) {
+        this.mongoTemplate = mongoTemplate;
+        this.jwtUtil = jwtUtil;
+        this.tokenEpochService = tokenEpochService;
+        this.refreshTokenTtl = refreshTokenTtl;
+    }
+    //---------------------------------------------------------------//
+
+    // an access token with the refresh token that renews it
+    public record TokenPair(String accessToken, String refreshToken, String role) {
+    }
+
+    // issues an access token and a new refresh token for a user that has just logged in
+    public TokenPair issue(String cardNumber, String role, Boolean activated, long epoch) {
+        String accessToken = jwtUtil.generateToken(cardNumber, role, activated, epoch);
+        return new TokenPair(accessToken, createRefreshToken(cardNumber, role, activated, epoch), role);
+    }
+
+    // exchanges a refresh token for a new token pair, the presented refresh token is used up
+    public TokenPair rotate(String refreshToken) {
+        if (refreshToken == null || refreshToken.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Refresh token is required");
+        }
+
+        // findAndRemove claims the token atomically, two concurrent refreshes cannot both succeed
+        RefreshToken stored = mongoTemplate.findAndRemove(
+                Query.query(Criteria.where("tokenHash").is(hash(refreshToken))), RefreshToken.class);
+        if (stored == null || stored.getExpiresAt().isBefore(LocalDateTime.now())) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid or expired refresh token");
+        }
+
+        // the user changed since login (role, activation, deletion), a fresh login is needed
+        long epoch = stored.getEpoch() == null ? 0L : stored.getEpoch();
+        if (!tokenEpochService.isCurrent(stored.getCardNumber(), epoch)) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Refresh token has been revoked");
+        }
+
+        return issue(stored.getCardNumber(), stored.getRole(), stored.getActivated(), epoch);
+    }
+
+    private String createRefreshToken(String cardNumber, String role, Boolean activated, long epoch) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        secureRandom.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        LocalDateTime now = LocalDateTime.now();
+        mongoTemplate.insert(RefreshToken.builder()
+                .tokenHash(hash(token))
+                .cardNumber(cardNumber)
+                .role(role)
+                .activated(activated)
+                .epoch(epoch)
+                .createdAt(now)
+                .expiresAt(now.plus(refreshTokenTtl))
+                .build());
+        return token;
+    }
+
+    private String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
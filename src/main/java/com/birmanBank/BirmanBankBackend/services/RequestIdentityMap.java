@@ -0,0 +1,185 @@
+package com.birmanBank.BirmanBankBackend.services;
+
+import com.birmanBank.BirmanBankBackend.models.Account;
+import com.birmanBank.BirmanBankBackend.models.Client;
+import com.birmanBank.BirmanBankBackend.models.User;
+import com.birmanBank.BirmanBankBackend.repositories.AccountRepository;
+import com.birmanBank.BirmanBankBackend.repositories.ClientRepository;
+import com.birmanBank.BirmanBankBackend.repositories.UserRepository;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/*
+ * RequestIdentityMap loads each account, client and user at most once per HTTP request
+ * the first lookup goes to MongoDB and the document is kept in the request's attributes,
+ * every later lookup of the same document in that request gets the same object back
+ * services put what they save into the map and remove what they delete, so a request always sees its own writes
+ * outside of a request (scheduled jobs, streamed responses) every lookup goes straight to the repository
+ */
+
+@Service
+public class RequestIdentityMap {
+
+    private static final String ATTRIBUTE = RequestIdentityMap.class.getName();
+
+    //-----------------------Constructors----------------------//
+    private final AccountRepository accountRepository;
+    private final ClientRepository clientRepository;
+    private final UserRepository userRepository;
+
+    public RequestIdentityMap(AccountRepository accountRepository, ClientRepository clientRepository,
+            UserRepository userRepository) {
+        this.accountRepository = accountRepository;
+        this.clientRepository = clientRepository;
+        this.userRepository = userRepository;
+    }
+    //---------------------------------------------------------------//
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder totalHits = new LongAdder();
+    private final LongAdder totalLoads = new LongAdder();
+
+    // the documents of one request and how often they were reused
+    private static class Entries {
+        private final Map<String, Object> documents = new HashMap<>();
+        private int hits;
+        private int loads;
+    }
+
+    // lookups served from the map (round trips avoided) and loaded from MongoDB, per request and in total
+    public record Counts(int hits, int loads) {
+    }
+
+    public record Stats(long requests, long hits, long loads) {
+    }
+
+    public Optional<Account> findAccount(String accountId) {
+        return find("Account:" + accountId, () -> accountRepository.findById(accountId), Account.class)
+                .map(this::remember);
+    }
+
+    public Optional<Client> findClient(String clientId) {
+        return find("Client:" + clientId, () -> clientRepository.findById(clientId), Client.class)
+                .map(this::remember);
+    }
+
+    public Optional<Client> findClientByUserCardNumber(String cardNumber) {
+        return find("Client.userCardNumber:" + cardNumber, () -> clientRepository.findByUserCardNumber(cardNumber),
+                Client.class)
+                .map(this::remember);
+    }
+
+    public Optional<User> findUser(String cardNumber) {
+        return find("User:" + cardNumber, () -> userRepository.findByCardNumber(cardNumber), User.class)
+                .map(this::remember);
+    }
+
+    // keeps a loaded or saved account so the rest of the request sees this version
+    public Account remember(Account account) {
+        put("Account:" + account.getAccountId(), account);
+        return account;
+    }
+
+    // a client is reachable by its ID and by its user's card number
+    public Client remember(Client client) {
+        put("Client:" + client.getClientId(), client);
+        if (client.getUserCardNumber() != null) {
+            put("Client.userCardNumber:" + client.getUserCardNumber(), client);
+        }
+        return client;
+    }
+
+    public User remember(User user) {
+        put("User:" + user.getCardNumber(), user);
+        return user;
+    }
+
+    public void forgetAccount(String accountId) {
+        remove("Account:" + accountId);
+    }
+
+    public void forgetClient(Client client) {
+        remove("Client:" + client.getClientId());
+        remove("Client.userCardNumber:" + client.getUserCardNumber());
+    }
+
+    public void forgetUser(String cardNumber) {
+        remove("User:" + cardNumber);
+    }
+
+    // a changed or deleted user is loaded again, together with its client (whose ID is the card number)
+    @EventListener
+    public void onUserChanged(UserChangedEvent event) {
+        forgetUser(event.cardNumber());
+        remove("Client:" + event.cardNumber());
+        remove("Client.userCardNumber:" + event.cardNumber());
+    }
+
+    // counts of the current request, called once the request is complete
+    public Counts completeRequest(RequestAttributes attributes) {
+        Entries entries = (Entries) attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (entries == null) {
+            return new Counts(0, 0);
+        }
+        attributes.removeAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        requests.increment();
+        totalHits.add(entries.hits);
+        totalLoads.add(entries.loads);
+        return new Counts(entries.hits, entries.loads);
+    }
+
+    public Stats getStats() {
+        return new Stats(requests.sum(), totalHits.sum(), totalLoads.sum());
+    }
+
+    private <T> Optional<T> find(String key, Supplier<Optional<T>> loader, Class<T> type) {
+        Entries entries = entries(true);
+        if (entries == null) {
+            return loader.get();
+        }
+        Object document = entries.documents.get(key);
+        if (document != null) {
+            entries.hits++;
+            return Optional.of(type.cast(document));
+        }
+        entries.loads++;
+        return loader.get();
+    }
+
+    private void put(String key, Object document) {
+        Entries entries = entries(true);
+        if (entries != null) {
+            entries.documents.put(key, document);
+        }
+    }
+
+    private void remove(String key) {
+        Entries entries = entries(false);
+        if (entries != null) {
+            entries.documents.remove(key);
+        }
+    }
+
+    // the map of the current request, null when there is no request on this thread
+    private Entries entries(boolean create) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return null;
+        }
+        Entries entries = (Entries) attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (entries == null && create) {
+            entries = new Entries();
+            attributes.setAttribute(ATTRIBUTE, entries, RequestAttributes.SCOPE_REQUEST);
+        }
+        return entries;
+    }
+}
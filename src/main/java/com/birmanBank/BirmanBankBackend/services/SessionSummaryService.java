@@ -0,0 +1,87 @@
+package com.birmanBank.BirmanBankBackend.services;
+
+import com.birmanBank.BirmanBankBackend.models.Client;
+import com.birmanBank.BirmanBankBackend.models.User;
+import com.birmanBank.BirmanBankBackend.repositories.ClientRepository;
+import com.birmanBank.BirmanBankBackend.repositories.UserRepository;
+import com.birmanBank.BirmanBankBackend.utils.LruCache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * SessionSummaryService answers the session check the frontend makes on every page navigation
+ * the summary (card number, role, first name, activation) is built once per user and kept for a short time,
+ * and dropped as soon as the user or its client changes
+ * building it takes at most one projected clients query, the role comes from the signed token when it has one
+ */
+
+@Service
+public class SessionSummaryService {
+
+    //-----------------------Constructors----------------------//
+    private final UserRepository userRepository;
+    private final ClientRepository clientRepository;
+    private final LruCache<String, Map<String, Object>> summaries;
+
+    public SessionSummaryService(UserRepository userRepository, ClientRepository clientRepository,
+            @Value("${bank.auth.session-cache-size:10000}") int cacheSize,
+            @Value("${bank.auth.session-cache-ttl:30s}") Duration cacheTtl) {
+        this.userRepository = userRepository;
+        this.clientRepository = clientRepository;
+        this.summaries = new LruCache<>(cacheSize, cacheTtl);
+    }
+    //---------------------------------------------------------------//
+
+    // the user part of the session check response, role may be null for tokens issued without a role claim
+    public Map<String, Object> getSessionUser(String cardNumber, String role) {
+        Map<String, Object> summary = summaries.get(cardNumber);
+        if (summary == null) {
+            summary = buildSessionUser(cardNumber, role);
+            summaries.put(cardNumber, summary);
+        }
+        return summary;
+    }
+
+    @EventListener
+    public void onUserChanged(UserChangedEvent event) {
+        summaries.remove(event.cardNumber());
+    }
+
+    public LruCache.Stats getStats() {
+        return summaries.getStats();
+    }
+
+    private Map<String, Object> buildSessionUser(String cardNumber, String role) {
+        if (role == null) {
+            role = userRepository.findByCardNumber(cardNumber)
+                    .map(User::getRole)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found"));
+        }
+
+        Map<String, Object> user = new LinkedHashMap<>();
+        user.put("cardNumber", cardNumber);
+        user.put("role", role);
+
+        // check if the user is an admin, admins have no client details
+        if ("ADMIN".equalsIgnoreCase(role)) {
+            user.put("isAdmin", true);
+        } else {
+            Client client = clientRepository.findSessionSummaryByUserCardNumber(cardNumber)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Client not found"));
+            user.put("isAdmin", false);
+            user.put("firstName", client.getFirstName());
+            user.put("activated", client.getActivated());
+        }
+        // shared between requests, so it must not be changed by callers
+        return Collections.unmodifiableMap(user);
+    }
+}
@@ -0,0 +1,144 @@
+package com.birmanBank.BirmanBankBackend.services;
+
+import com.birmanBank.BirmanBankBackend.models.RevokedUser;
+import com.birmanBank.BirmanBankBackend.models.User;
+import com.birmanBank.BirmanBankBackend.repositories.RefreshTokenRepository;
+import com.birmanBank.BirmanBankBackend.repositories.UserRepository;
+import com.birmanBank.BirmanBankBackend.utils.ConcurrentLruCache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/*
+ * TokenEpochService keeps the revocation epoch of recently seen users in memory
+ * each token carries the epoch of its user at the time it was issued, and is only accepted while the epochs match
+ * bumping the epoch (on a role change, deactivation or deletion) makes every earlier token of that user invalid at once
+ * a deleted user leaves a revoked_users record behind, so the deletion reaches every instance, not only this one
+ * bumping or revoking also deletes the user's refresh tokens, they could never be rotated again anyway
+ * the table is bounded, filled on first use and refreshed in the background, so checking a token needs no database call
+ * a refresh only reads the bumps and revocations made since the last one, plus the revocations the table holds
+ */
+
+@Service
+public class TokenEpochService {
+
+    // the epoch of a user that no longer exists, no token carries it
+    private static final long REVOKED = -1L;
+
+    private static final FindAndModifyOptions RETURN_NEW = FindAndModifyOptions.options().returnNew(true);
+
+    // changes are stamped with the clock of the instance that made them, each refresh reaches back this far
+    // so a change from an instance whose clock is slightly behind is not missed
+    private static final Duration CLOCK_SKEW = Duration.ofSeconds(30);
+
+    //-----------------------Constructors----------------------//
+    private final UserRepository userRepository;
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final MongoTemplate mongoTemplate;
+    private final ConcurrentLruCache<String, Long> epochs; // epochs only grow, so merges keep the max
+
+    public TokenEpochService(UserRepository userRepository, RefreshTokenRepository refreshTokenRepository,
+            MongoTemplate mongoTemplate, @Value("${bank.auth.epoch-cache-size:100000}") int cacheSize) {
+        this.userRepository = userRepository;
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.epochs = new ConcurrentLruCache<>(cacheSize, Duration.ZERO);
+    }
+    //---------------------------------------------------------------//
+
+    // users loaded before the first refresh read their epoch from the database, so it starts from now
+    private volatile LocalDateTime lastRefresh = LocalDateTime.now();
+
+    // the epoch a new token of this user is issued with
+    public long currentEpoch(String cardNumber) {
+        Long epoch = epochs.get(cardNumber);
+        if (epoch == null) {
+            long stored = userRepository.findByCardNumber(cardNumber)
+                    .map(this::epochOf)
+                    .orElse(REVOKED);
+            epoch = epochs.merge(cardNumber, stored, Math::max);
+        }
+        return epoch;
+    }
+
+    // true while no change to the user has been made since the token was issued
+    public boolean isCurrent(String cardNumber, long tokenEpoch) {
+        long epoch = currentEpoch(cardNumber);
+        return epoch != REVOKED && epoch == tokenEpoch;
+    }
+
+    // invalidates every token issued to the user so far
+    public void bump(String cardNumber) {
+        LocalDateTime now = LocalDateTime.now();
+        User user = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("cardNumber").is(cardNumber)),
+                new Update().inc("tokenEpoch", 1).set("epochChangedAt", now).set("updatedAt", now),
+                RETURN_NEW, User.class);
+        if (user != null) {
+            epochs.merge(cardNumber, epochOf(user), Math::max);
+        } else {
+            epochs.put(cardNumber, REVOKED);
+        }
+        refreshTokenRepository.deleteByCardNumber(cardNumber);
+    }
+
+    // the user was deleted, none of its tokens may be used again on any instance
+    public void revoke(String cardNumber) {
+        mongoTemplate.save(RevokedUser.builder().cardNumber(cardNumber).revokedAt(LocalDateTime.now()).build());
+        epochs.put(cardNumber, REVOKED);
+        refreshTokenRepository.deleteByCardNumber(cardNumber);
+    }
+
+    // a user was created with this card number, a revocation left by an earlier user with it no longer applies
+    public void reinstate(String cardNumber) {
+        mongoTemplate.remove(Query.query(Criteria.where("cardNumber").is(cardNumber)), RevokedUser.class);
+        epochs.remove(cardNumber);
+    }
+
+    // picks up epochs bumped and users deleted by other instances, for the users held in the table
+    // both queries are range scans of an index over what changed since the last refresh, not of every user
+    @Scheduled(fixedDelayString = "${bank.auth.epoch-refresh-ms:5000}")
+    public void refresh() {
+        LocalDateTime started = LocalDateTime.now();
+        LocalDateTime since = lastRefresh.minus(CLOCK_SKEW);
+
+        Query bumped = Query.query(Criteria.where("epochChangedAt").gte(since));
+        bumped.fields().include("tokenEpoch");
+        for (User user : mongoTemplate.find(bumped, User.class)) {
+            epochs.mergeIfPresent(user.getCardNumber(), epochOf(user), Math::max);
+        }
+
+        Query tombstones = Query.query(Criteria.where("revokedAt").gte(since));
+        tombstones.fields().include("cardNumber");
+        for (RevokedUser user : mongoTemplate.find(tombstones, RevokedUser.class)) {
+            epochs.mergeIfPresent(user.getCardNumber(), REVOKED, (current, revokedEpoch) -> revokedEpoch);
+        }
+
+        // a revocation that expired or was lifted is looked up again, the user may exist once more
+        List<String> held = epochs.keysWhere((cardNumber, epoch) -> epoch == REVOKED);
+        if (!held.isEmpty()) {
+            Set<String> revoked = new HashSet<>();
+            Query stillRevoked = Query.query(Criteria.where("cardNumber").in(held));
+            stillRevoked.fields().include("cardNumber");
+            mongoTemplate.find(stillRevoked, RevokedUser.class).forEach(user -> revoked.add(user.getCardNumber()));
+            held.stream().filter(cardNumber -> !revoked.contains(cardNumber)).forEach(epochs::remove);
+        }
+        lastRefresh = started;
+    }
+
+    private long epochOf(User user) {
+        return user.getTokenEpoch() == null ? 0L : user.getTokenEpoch();
+    }
+}
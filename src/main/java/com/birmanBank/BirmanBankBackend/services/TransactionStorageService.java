@@ -0,0 +1,104 @@
+package com.birmanBank.BirmanBankBackend.services;
+
+import com.birmanBank.BirmanBankBackend.models.Transaction;
+
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.timeseries.Granularity;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/*
+ * TransactionStorageService decides how the transactions collection is laid out
+ * in the default "standard" mode it is a regular collection, in "timeseries" mode it is created as a MongoDB
+ * time-series collection with timestamp as the time field and accountId as the meta field, so the transactions
+ * of an account are stored together in time buckets - the repository and its finders do not change
+ * a collection that already exists keeps its layout, switching an existing database needs a copy into a new collection
+ * it also reports the storage size of the current layout, the query latency of the two layouts is compared
+ * by TransactionStorageBenchmarkTest instead of against the live database
+ */
+
+@Service
+public class TransactionStorageService {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionStorageService.class);
+
+    //-----------------------Constructors----------------------//
+    private final MongoTemplate mongoTemplate;
+    private final String storageMode;
+    private final Granularity granularity;
+
+    public TransactionStorageService(MongoTemplate mongoTemplate,
+            @Value("${bank.transactions.storage:standard}") String storageMode,
+            @Value("${bank.transactions.timeseries-granularity:HOURS}") Granularity granularity) {
+        this.mongoTemplate = mongoTemplate;
+        this.storageMode = storageMode;
+        this.granularity = granularity;
+    }
+    //---------------------------------------------------------------//
+
+    private volatile boolean timeSeries;
+
+    // storage figures of the transactions collection
+    public record StorageReport(String layout, long count, long dataSize, long storageSize, long totalIndexSize,
+            long avgObjSize, Long bucketCount) {
+    }
+
+    // runs before anything can write a transaction or build its indexes, which would create a regular collection
+    @PostConstruct
+    public void createCollection() {
+        if (mongoTemplate.collectionExists(Transaction.class)) {
+            timeSeries = isTimeSeriesCollection();
+            if ("timeseries".equalsIgnoreCase(storageMode) && !timeSeries) {
+                log.warn("Transactions are stored in a regular collection that already exists, "
+                        + "time-series storage only applies to a new collection");
+            }
+        } else if ("timeseries".equalsIgnoreCase(storageMode)) {
+            mongoTemplate.createCollection(Transaction.class, CollectionOptions.timeSeries("timestamp",
+                    options -> options.metaField("accountId").granularity(granularity)));
+            timeSeries = true;
+            log.info("Created transactions as a time-series collection (granularity {})", granularity);
+        }
+    }
+
+    public boolean isTimeSeries() {
+        return timeSeries;
+    }
+
+    // reads $collStats of the collection, a single aggregation over its metadata
+    public StorageReport getReport() {
+        String collection = mongoTemplate.getCollectionName(Transaction.class);
+        Document stats = mongoTemplate.getCollection(collection)
+                .aggregate(List.of(new Document("$collStats", new Document("storageStats", new Document()))))
+                .first();
+        Document storage = stats == null ? new Document() : stats.get("storageStats", new Document());
+        Document timeseries = storage.get("timeseries", Document.class);
+
+        return new StorageReport(timeSeries ? "timeseries" : "standard",
+                number(storage, "count"),
+                number(storage, "size"),
+                number(storage, "storageSize"),
+                number(storage, "totalIndexSize"),
+                number(storage, "avgObjSize"),
+                timeseries == null ? null : number(timeseries, "bucketCount"));
+    }
+
+    private boolean isTimeSeriesCollection() {
+        Document collection = mongoTemplate.getDb()
+                .listCollections()
+                .filter(new Document("name", mongoTemplate.getCollectionName(Transaction.class)))
+                .first();
+        return collection != null && "timeseries".equals(collection.getString("type"));
+    }
+
+    private static long number(Document document, String key) {
+        Object value = document.get(key);
+        return value instanceof Number number ? number.longValue() : 0L;
+    }
+}
@@ -0,0 +1,18 @@
+package com.birmanBank.BirmanBankBackend.services;
+
+/*
+ * published whenever a user, or the client attached to it, is created, updated or deleted
+ * listeners drop anything they cached about that user
+ * a created user has nothing cached about it yet, caches that hold only found entries may skip those events
+ */
+public record UserChangedEvent(String cardNumber, boolean created) {
+
+    // an update or deletion
+    public UserChangedEvent(String cardNumber) {
+        this(cardNumber, false);
+    }
+
+    public static UserChangedEvent created(String cardNumber) {
+        return new UserChangedEvent(cardNumber, true);
+    }
+}
@@ -1,11 +1,11 @@
 package com.birmanBank.BirmanBankBackend.services;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import com.birmanBank.BirmanBankBackend.models.User;
 import com.birmanBank.BirmanBankBackend.repositories.UserRepository;
 
-import java.util.List;
 import java.util.Optional;
 
 @Service
@@ -13,15 +13,23 @@ public class UserService {
 
     //-----------------------Constructors----------------------//
     private UserRepository userRepository;
+    private TokenEpochService tokenEpochService;
+    private ApplicationEventPublisher eventPublisher;
 
-    public UserService(UserRepository userRepository) {
+    public UserService(UserRepository userRepository, TokenEpochService tokenEpochService,
+            ApplicationEventPublisher eventPublisher) {
         this.userRepository = userRepository;
+        this.tokenEpochService = tokenEpochService;
+        this.eventPublisher = eventPublisher;
     }
     //---------------------------------------------------------------//
 
     //create a new user
     public User createUser(User user) {
-        return userRepository.save(user);
+        User savedUser = userRepository.save(user);
+        tokenEpochService.reinstate(savedUser.getCardNumber());
+        eventPublisher.publishEvent(UserChangedEvent.created(savedUser.getCardNumber()));
+        return savedUser;
     }
     
     //retrieve a user by card number
@@ -29,18 +37,22 @@ public class UserService {
         return userRepository.findById(cardNumber);
     }
     
-    //retrieve all users
-    public List<User> getAllUsers() {
-        return userRepository.findAll();
-    }
-    
     //update a user
+    //the role or password may have changed, so every token issued to the user is revoked
     public User updateUser(User user) {
-        return userRepository.save(user);
+        userRepository.findById(user.getCardNumber())
+                .ifPresent(existing -> user.setTokenEpoch(existing.getTokenEpoch()));
+        User savedUser = userRepository.save(user);
+        tokenEpochService.bump(savedUser.getCardNumber());
+        savedUser.setTokenEpoch(tokenEpochService.currentEpoch(savedUser.getCardNumber()));
+        eventPublisher.publishEvent(new UserChangedEvent(savedUser.getCardNumber()));
+        return savedUser;
     }
     
     //delete a user by card number
     public void deleteUser(String cardNumber) {
         userRepository.deleteById(cardNumber);
+        tokenEpochService.revoke(cardNumber);
+        eventPublisher.publishEvent(new UserChangedEvent(cardNumber));
     }
 }
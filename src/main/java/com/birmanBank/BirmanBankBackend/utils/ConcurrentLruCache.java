@@ -0,0 +1,177 @@
+package com.birmanBank.BirmanBankBackend.utils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiPredicate;
+import java.util.function.BinaryOperator;
+
+/*
+ * a thread safe cache for the request hot path, bounded by size and, optionally, by time
+ * reads never lock: a hit only stamps the entry's last access time, there is no LRU list to reorder
+ * once the cache has grown a little past its size, one writer sweeps it, dropping expired entries
+ * and then the least recently read ones until it is back at its size, so the cost is spread over many puts
+ */
+public class ConcurrentLruCache<K, V> {
+
+    private final int maxSize;
+    private final int sweepAt; // size that triggers a sweep, a few percent above maxSize
+    private final long ttlMillis; // 0 means entries only leave the cache when it is full
+    private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final ReentrantLock sweepLock = new ReentrantLock();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ConcurrentLruCache(int maxSize, Duration ttl) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be greater than zero");
+        }
+        this.maxSize = maxSize;
+        this.sweepAt = maxSize + Math.max(1, maxSize / 16);
+        this.ttlMillis = ttl.toMillis();
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+        private volatile long lastAccess;
+
+        private Entry(V value, long expiresAt, long lastAccess) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    // returns the cached value, or null if it is missing or expired
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (entry.expiresAt <= now) {
+            if (entries.remove(key, entry)) {
+                evictions.increment();
+            }
+            misses.increment();
+            return null;
+        }
+        if (entry.lastAccess != now) { // skip the write when it would not change anything
+            entry.lastAccess = now;
+        }
+        hits.increment();
+        return entry.value;
+    }
+
+    public void put(K key, V value) {
+        put(key, value, expiresAt(System.currentTimeMillis()));
+    }
+
+    // caches the value until the given epoch millis, capped by the cache's own time to live
+    public void put(K key, V value, long expiresAtMillis) {
+        long now = System.currentTimeMillis();
+        long expiresAt = ttlMillis > 0 ? Math.min(expiresAtMillis, now + ttlMillis) : expiresAtMillis;
+        entries.put(key, new Entry<>(value, expiresAt, now));
+        sweepIfFull();
+    }
+
+    // combines the value with the cached one, or caches it when there is none
+    // will return the value that is cached afterwards
+    public V merge(K key, V value, BinaryOperator<V> remapping) {
+        long now = System.currentTimeMillis();
+        Entry<V> merged = entries.compute(key, (k, current) -> current == null || current.expiresAt <= now
+                ? new Entry<>(value, expiresAt(now), now)
+                : new Entry<>(remapping.apply(current.value, value), current.expiresAt, current.lastAccess));
+        sweepIfFull();
+        return merged.value;
+    }
+
+    // like merge, but a key that is not cached stays uncached
+    public void mergeIfPresent(K key, V value, BinaryOperator<V> remapping) {
+        entries.computeIfPresent(key, (k, current) -> new Entry<>(remapping.apply(current.value, value),
+                current.expiresAt, current.lastAccess));
+    }
+
+    public void remove(K key) {
+        if (entries.remove(key) != null) {
+            evictions.increment();
+        }
+    }
+
+    // removes every entry matching the predicate, a full scan, meant for background jobs
+    public void removeIf(BiPredicate<K, V> predicate) {
+        entries.forEach((key, entry) -> {
+            if (predicate.test(key, entry.value) && entries.remove(key, entry)) {
+                evictions.increment();
+            }
+        });
+    }
+
+    // keys of every entry matching the predicate, a full scan, meant for background jobs
+    public List<K> keysWhere(BiPredicate<K, V> predicate) {
+        List<K> keys = new ArrayList<>();
+        entries.forEach((key, entry) -> {
+            if (predicate.test(key, entry.value)) {
+                keys.add(key);
+            }
+        });
+        return keys;
+    }
+
+    public void clear() {
+        evictions.add(entries.size());
+        entries.clear();
+    }
+
+    public LruCache.Stats getStats() {
+        return new LruCache.Stats(entries.size(), hits.sum(), misses.sum(), evictions.sum());
+    }
+
+    private long expiresAt(long now) {
+        return ttlMillis > 0 ? now + ttlMillis : Long.MAX_VALUE;
+    }
+
+    private void sweepIfFull() {
+        if (entries.size() > sweepAt && sweepLock.tryLock()) {
+            try {
+                sweep();
+            } finally {
+                sweepLock.unlock();
+            }
+        }
+    }
+
+    // drops expired entries, then the least recently read ones down to maxSize
+    private void sweep() {
+        long now = System.currentTimeMillis();
+        List<Map.Entry<K, Entry<V>>> live = new ArrayList<>(entries.size());
+        for (Map.Entry<K, Entry<V>> entry : entries.entrySet()) {
+            if (entry.getValue().expiresAt <= now) {
+                if (entries.remove(entry.getKey(), entry.getValue())) {
+                    evictions.increment();
+                }
+            } else {
+                live.add(Map.entry(entry.getKey(), entry.getValue()));
+            }
+        }
+        int excess = live.size() - maxSize;
+        if (excess <= 0) {
+            return;
+        }
+        live.sort(Comparator.comparingLong(entry -> entry.getValue().lastAccess));
+        for (int i = 0; i < excess; i++) {
+            if (entries.remove(live.get(i).getKey(), live.get(i).getValue())) {
+                evictions.increment();
+            }
+        }
+    }
+}
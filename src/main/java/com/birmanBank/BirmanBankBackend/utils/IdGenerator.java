@@ -0,0 +1,88 @@
+package com.birmanBank.BirmanBankBackend.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * generates unique, time ordered 64 bit IDs (Snowflake layout)
+ * | 41 bits milliseconds since 2024-01-01 | 10 bits node | 12 bits sequence |
+ * up to 4096 IDs per millisecond per node, lock free, IDs from one node are strictly increasing
+ * if the clock goes backwards or the sequence runs out, the generator keeps counting from its last ID
+ * instead of waiting, so it never blocks and never repeats
+ * string IDs are zero padded to 19 digits so they sort in creation order as strings too
+ * the node id must be configured per instance, a derived one (e.g. from the host name) cannot rule out collisions
+ */
+@Component
+public class IdGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(IdGenerator.class);
+
+    private static final long EPOCH_MILLIS = 1704067200000L; // 2024-01-01T00:00:00Z
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int ID_STRING_LENGTH = 19; // digits of Long.MAX_VALUE
+
+    private final long nodeBits;
+
+    // last issued time and sequence packed as (millis << SEQUENCE_BITS | sequence)
+    // a sequence overflow carries into the millis, which simply borrows the next millisecond
+    private final AtomicLong lastState = new AtomicLong();
+
+    public IdGenerator(@Value("${bank.id.node-id:}") String nodeId) {
+        if (nodeId == null || nodeId.isBlank()) {
+            throw new IllegalStateException(
+                    "bank.id.node-id is required, give every instance its own value between 0 and " + MAX_NODE_ID);
+        }
+        long node;
+        try {
+            node = Long.parseLong(nodeId.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("bank.id.node-id must be a number, got: " + nodeId);
+        }
+        if (node < 0 || node > MAX_NODE_ID) {
+            throw new IllegalStateException("bank.id.node-id must be between 0 and " + MAX_NODE_ID + ", got: " + node);
+        }
+        log.info("ID generator using node id {}", node);
+        this.nodeBits = node << SEQUENCE_BITS;
+    }
+
+    public long nextId() {
+        while (true) {
+            long last = lastState.get();
+            long now = System.currentTimeMillis() - EPOCH_MILLIS;
+            long next = now > (last >>> SEQUENCE_BITS) ? now << SEQUENCE_BITS : last + 1;
+            if (lastState.compareAndSet(last, next)) {
+                long millis = next >>> SEQUENCE_BITS;
+                return (millis << (NODE_BITS + SEQUENCE_BITS)) | nodeBits | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    // next ID as a fixed width decimal string
+    public String nextIdString() {
+        long value = nextId();
+        char[] digits = new char[ID_STRING_LENGTH];
+        for (int i = ID_STRING_LENGTH - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return new String(digits);
+    }
+
+    // the time an ID string was generated at, empty for IDs that were not made by this generator
+    public static Optional<Instant> timeOf(String id) {
+        if (id == null || id.length() != ID_STRING_LENGTH || !id.chars().allMatch(Character::isDigit)) {
+            return Optional.empty();
+        }
+        long millis = Long.parseLong(id) >>> (NODE_BITS + SEQUENCE_BITS);
+        return Optional.of(Instant.ofEpochMilli(EPOCH_MILLIS + millis));
+    }
+}
@@ -0,0 +1,78 @@
+package com.birmanBank.BirmanBankBackend.utils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/*
+ * an LruCache that also indexes its keys by values derived from the cached values, e.g. accounts by owner
+ * removing everything under one index value only touches the entries filed under it instead of scanning the cache
+ * the indexes are kept exact through the added/removed hooks, so eviction and expiry clean them up too
+ */
+public class IndexedLruCache<K, V> extends LruCache<K, V> {
+
+    private final List<Index<K, V>> indexes = new ArrayList<>();
+
+    public IndexedLruCache(int maxSize, Duration ttl) {
+        super(maxSize, ttl);
+    }
+
+    // a secondary index, created by addIndex and passed back to removeAll
+    public static final class Index<K, V> {
+        private final Function<V, ?> extractor;
+        private final Map<Object, Set<K>> keys = new HashMap<>();
+
+        private Index(Function<V, ?> extractor) {
+            this.extractor = extractor;
+        }
+    }
+
+    // indexes the cached keys by extractor(value), null values are not indexed
+    // meant to be called while the cache is still empty, i.e. from the owner's constructor
+    public synchronized Index<K, V> addIndex(Function<V, ?> extractor) {
+        Index<K, V> index = new Index<>(extractor);
+        indexes.add(index);
+        return index;
+    }
+
+    // removes every entry whose value is filed under the given index value
+    public synchronized void removeAll(Index<K, V> index, Object indexValue) {
+        Set<K> keys = index.keys.get(indexValue);
+        if (keys == null) {
+            return;
+        }
+        // remove updates the index set through the removed hook, so iterate over a copy
+        for (K key : new ArrayList<>(keys)) {
+            remove(key);
+        }
+    }
+
+    @Override
+    protected void added(K key, V value) {
+        for (Index<K, V> index : indexes) {
+            Object indexValue = index.extractor.apply(value);
+            if (indexValue != null) {
+                index.keys.computeIfAbsent(indexValue, ignored -> new HashSet<>()).add(key);
+            }
+        }
+    }
+
+    @Override
+    protected void removed(K key, V value) {
+        for (Index<K, V> index : indexes) {
+            Object indexValue = index.extractor.apply(value);
+            if (indexValue == null) {
+                continue;
+            }
+            Set<K> keys = index.keys.get(indexValue);
+            if (keys != null && keys.remove(key) && keys.isEmpty()) {
+                index.keys.remove(indexValue);
+            }
+        }
+    }
+}
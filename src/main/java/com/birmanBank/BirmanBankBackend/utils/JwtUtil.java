@@ -1,6 +1,8 @@
 package com.birmanBank.BirmanBankBackend.utils;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 
@@ -8,52 +10,100 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.util.Date;
+import java.util.HexFormat;
 
 /*
  * the purpose of this is to generate and validate JWT tokens
  * it uses the secret key from application.properties to sign the tokens
  * the generateToken method creates a token with the username as the subject
- * the validateToken method checks if the token is valid
- * the extractUsername method retrieves the username from the token
+ * the verify method checks the signature and expiry once and returns the claims of the token
+ * the parser is built once, and recently verified tokens are cached by their hash until they expire
+ * so a client sending the same token on every request only pays for the signature check the first time
+ * every request reads that cache, so it is a ConcurrentLruCache whose reads take no lock
  */
 @Component
 public class JwtUtil {
 
+    // claims signed into every token so requests can be authorized without loading the user
+    public static final String CLAIM_ROLE = "role";
+    public static final String CLAIM_ACTIVATED = "activated";
+    public static final String CLAIM_EPOCH = "epoch";
+
     private final SecretKey secretKey;
+    private final JwtParser parser;
+    private final ConcurrentLruCache<String, Claims> verifiedTokens;
 
-    public JwtUtil(@Value("${jwt.secret}") String secret) {
+    public JwtUtil(@Value("${jwt.secret}") String secret,
+            @Value("${bank.jwt.verified-cache-size:10000}") int verifiedCacheSize) {
         //convert the secret string to a SecretKey using HMAC SHA algorithm for JWT
         this.secretKey = Keys.hmacShaKeyFor(secret.getBytes());
+        this.parser = Jwts.parser().verifyWith(secretKey).build();
+        this.verifiedTokens = new ConcurrentLruCache<>(verifiedCacheSize, Duration.ZERO);
     }
 
-    //generate JWT Token
-    public String generateToken(String username) {
+    //generate JWT Token with the role, activation state and revocation epoch of the user
+    public String generateToken(String username, String role, Boolean activated, long epoch) {
         return Jwts.builder()
                 .subject(username)
+                .claim(CLAIM_ROLE, role)
+                .claim(CLAIM_ACTIVATED, activated)
+                .claim(CLAIM_EPOCH, epoch)
                 .issuedAt(new Date())
                 .expiration(new Date(System.currentTimeMillis() + 1000 * 60 * 30)) // 30 minutes
                 .signWith(secretKey)
                 .compact();
     }
 
+    //verify JWT Token - returns its claims, throws JwtException if the token is invalid or expired
+    public Claims verify(String token) {
+        if (token == null || token.isBlank()) {
+            throw new JwtException("Token is empty");
+        }
+        String tokenHash = hash(token);
+        Claims cached = verifiedTokens.get(tokenHash);
+        if (cached != null) {
+            return cached;
+        }
+
+        Claims claims = parser.parseSignedClaims(token).getPayload();
+        // the cache entry expires with the token, after that the token is parsed again and rejected
+        if (claims.getExpiration() != null) {
+            verifiedTokens.put(tokenHash, claims, claims.getExpiration().getTime());
+        }
+        return claims;
+    }
+
     //validate JWT Token - checks if the token is valid
     public boolean validateToken(String token) {
         try {
-            Jwts.parser().verifyWith(secretKey).build().parseSignedClaims(token);
+            verify(token);
             return true;
-        } catch (Exception e) {
+        } catch (JwtException | IllegalArgumentException e) {
             return false;
         }
     }
 
     //extract username from JWT Token
     public String extractUsername(String token) {
-        Claims claims = Jwts.parser()
-                .verifyWith(secretKey)
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
-        return claims.getSubject();
+        return verify(token).getSubject();
+    }
+
+    public LruCache.Stats getVerifiedTokenCacheStats() {
+        return verifiedTokens.getStats();
+    }
+
+    // tokens are cached by hash so the cache never holds a usable bearer token
+    private String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
     }
-}
\ No newline at end of file
+}
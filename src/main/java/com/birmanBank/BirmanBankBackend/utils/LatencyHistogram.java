@@ -0,0 +1,61 @@
+package com.birmanBank.BirmanBankBackend.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * a lock free latency histogram with power of two microsecond buckets
+ * bucket i counts samples below 2^i microseconds, so percentiles are exact to within a factor of two
+ * recording is a couple of atomic increments, cheap enough to wrap every call of a hot path
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 32; // the last bucket holds everything from about 18 minutes up
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder totalMicros = new LongAdder();
+    private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+
+    // sample count, mean, max and the upper bound of the bucket holding each percentile, all in microseconds
+    public record Snapshot(long count, long meanMicros, long p50Micros, long p90Micros, long p99Micros,
+            long maxMicros) {
+    }
+
+    public void record(long elapsedNanos) {
+        long micros = Math.max(0, elapsedNanos / 1000);
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        counts.incrementAndGet(bucket);
+        totalMicros.add(micros);
+        maxMicros.accumulate(micros);
+    }
+
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        if (count == 0) {
+            return new Snapshot(0, 0, 0, 0, 0, 0);
+        }
+        long max = maxMicros.get();
+        return new Snapshot(count, totalMicros.sum() / count,
+                percentile(copy, count, 0.50, max), percentile(copy, count, 0.90, max),
+                percentile(copy, count, 0.99, max), max);
+    }
+
+    // upper bound of the bucket that contains the given fraction of samples, never above the max seen
+    private long percentile(long[] buckets, long count, double fraction, long max) {
+        long target = (long) Math.ceil(count * fraction);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i];
+            if (seen >= target) {
+                return Math.min(1L << i, max);
+            }
+        }
+        return max;
+    }
+}
@@ -0,0 +1,49 @@
+package com.birmanBank.BirmanBankBackend.utils;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.schema.JsonSchemaObject;
+
+import java.math.BigDecimal;
+
+/*
+ * LegacyDecimals converts a money field that is still a string (Spring Data's old BigDecimal mapping) to Decimal128
+ * for the documents an update is about to touch, since $inc and range guards like gte only work on numbers
+ * the Decimal128MigrationService converts whole collections in the background, this covers what it has not reached yet
+ */
+public final class LegacyDecimals {
+
+    private LegacyDecimals() {
+    }
+
+    // converts the field of every matching document where it is still a string
+    // will return true if any was found, the caller can then retry its update once
+    public static boolean convertStrings(MongoTemplate mongoTemplate, Class<?> entityClass, Criteria criteria,
+            String field) {
+        Query query = new Query(criteria).addCriteria(Criteria.where(field).type(JsonSchemaObject.Type.STRING));
+        query.fields().include(field);
+        String collection = mongoTemplate.getCollectionName(entityClass);
+
+        boolean found = false;
+        for (Document document : mongoTemplate.query(entityClass).as(Document.class).matching(query).all()) {
+            Object value = document.get(field);
+            Decimal128 converted;
+            try {
+                converted = new Decimal128(new BigDecimal(((String) value).trim()));
+            } catch (NumberFormatException | ArithmeticException e) {
+                continue; // not a number, the caller's update fails as it would have
+            }
+            // only replaces the string that was read, a concurrent conversion or write wins
+            mongoTemplate.getCollection(collection).updateOne(
+                    Filters.and(Filters.eq("_id", document.get("_id")), Filters.eq(field, value)),
+                    Updates.set(field, converted));
+            found = true;
+        }
+        return found;
+    }
+}
@@ -0,0 +1,124 @@
+package com.birmanBank.BirmanBankBackend.utils;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiPredicate;
+
+/*
+ * a small thread safe in-memory cache bounded by size and, optionally, by time
+ * the least recently used entry is dropped once the cache is full
+ * entries expire after the cache's time to live, or at their own expiry time when one is given on put
+ * subclasses are told about every entry that is added or removed, always while holding the cache's lock
+ */
+public class LruCache<K, V> {
+
+    private final int maxSize;
+    private final long ttlMillis; // 0 means entries only leave the cache when it is full
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public LruCache(int maxSize) {
+        this(maxSize, Duration.ZERO);
+    }
+
+    public LruCache(int maxSize, Duration ttl) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be greater than zero");
+        }
+        this.maxSize = maxSize;
+        this.ttlMillis = ttl.toMillis();
+        // access order turns the map into an LRU list, eldest entry first
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    // hit/miss/eviction counters since the cache was created
+    public record Stats(int size, long hits, long misses, long evictions) {
+    }
+
+    private record Entry<V>(V value, long expiresAt) {
+    }
+
+    // returns the cached value, or null if it is missing or expired
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (entry.expiresAt() <= System.currentTimeMillis()) {
+            entries.remove(key);
+            removed(key, entry.value());
+            evictions++;
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value();
+    }
+
+    public void put(K key, V value) {
+        put(key, value, ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : Long.MAX_VALUE);
+    }
+
+    // caches the value until the given epoch millis, capped by the cache's own time to live
+    public synchronized void put(K key, V value, long expiresAtMillis) {
+        long expiresAt = ttlMillis > 0 ? Math.min(expiresAtMillis, System.currentTimeMillis() + ttlMillis)
+                : expiresAtMillis;
+        Entry<V> previous = entries.put(key, new Entry<>(value, expiresAt));
+        if (previous != null) {
+            removed(key, previous.value());
+        }
+        added(key, value);
+        if (entries.size() > maxSize) {
+            Iterator<Map.Entry<K, Entry<V>>> eldest = entries.entrySet().iterator();
+            Map.Entry<K, Entry<V>> entry = eldest.next();
+            eldest.remove();
+            removed(entry.getKey(), entry.getValue().value());
+            evictions++;
+        }
+    }
+
+    public synchronized void remove(K key) {
+        Entry<V> entry = entries.remove(key);
+        if (entry != null) {
+            removed(key, entry.value());
+            evictions++;
+        }
+    }
+
+    // removes every entry matching the predicate, used when the key of a changed entry is not known
+    public synchronized void removeIf(BiPredicate<K, V> predicate) {
+        Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<K, Entry<V>> entry = iterator.next();
+            if (predicate.test(entry.getKey(), entry.getValue().value())) {
+                iterator.remove();
+                removed(entry.getKey(), entry.getValue().value());
+                evictions++;
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        evictions += entries.size();
+        entries.forEach((key, entry) -> removed(key, entry.value()));
+        entries.clear();
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(entries.size(), hits, misses, evictions);
+    }
+
+    // called after an entry was stored, a replaced value is reported to removed first
+    protected void added(K key, V value) {
+    }
+
+    // called after an entry left the cache, whatever the reason
+    protected void removed(K key, V value) {
+    }
+}
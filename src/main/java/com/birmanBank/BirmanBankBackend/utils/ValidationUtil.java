@@ -5,6 +5,7 @@ import java.math.BigDecimal;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.server.ResponseStatusException;
 
+import com.birmanBank.BirmanBankBackend.models.Money;
 import com.birmanBank.BirmanBankBackend.repositories.ClientRepository;
 
 public class ValidationUtil {
@@ -52,6 +53,20 @@ public class ValidationUtil {
         }
     }
 
+    // validates a positive amount from a request and converts it to Money
+    // fractions of a cent are rejected instead of rounded, so nobody is charged or credited a different amount
+    public static Money validateMoneyAmount(BigDecimal amount, String fieldName) {
+        validatePositiveAmount(amount, fieldName);
+        if (amount.stripTrailingZeros().scale() > Money.CURRENCY.getDefaultFractionDigits()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, fieldName + " cannot have fractions of a cent");
+        }
+        try {
+            return Money.of(amount);
+        } catch (ArithmeticException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, fieldName + " is too large");
+        }
+    }
+
     public static void validateAccountOwnership(String accountClientId, String expectedClientId) {
         if (!accountClientId.equals(expectedClientId)) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Account does not belong to the authenticated user");
@@ -64,6 +79,12 @@ public class ValidationUtil {
         }
     }
 
+    public static void validateSufficientBalance(Money balance, Money amountNeeded) {
+        if (balance.compareTo(amountNeeded) < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Insufficient balance in account");
+        }
+    }
+
     public static void validateAccountType(String accountType) {
         if (!"Chequing".equalsIgnoreCase(accountType) && !"Savings".equalsIgnoreCase(accountType)) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid account type");
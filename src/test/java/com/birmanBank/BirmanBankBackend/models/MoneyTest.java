@@ -0,0 +1,93 @@
+package com.birmanBank.BirmanBankBackend.models;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/*
+ * the long division of multiply is checked against BigDecimal, which defines what each rounding mode means
+ */
+class MoneyTest {
+
+    private static final long[] AMOUNTS = { 0, 1, 2, 5, 7, 10, 15, 25, 99, 101, 12345, -1, -2, -5, -7, -15, -25,
+            -12345 };
+    private static final long[][] RATIOS = { { 1, 2 }, { 1, 3 }, { 2, 3 }, { 15, 1000 }, { 1, 4 }, { 3, 8 },
+            { -1, 2 }, { 1, -3 }, { -7, -10 } };
+
+    @ParameterizedTest
+    @EnumSource(value = RoundingMode.class, names = "UNNECESSARY", mode = EnumSource.Mode.EXCLUDE)
+    void multiplyRoundsLikeBigDecimal(RoundingMode mode) {
+        for (long amount : AMOUNTS) {
+            for (long[] ratio : RATIOS) {
+                long expected = BigDecimal.valueOf(amount).multiply(BigDecimal.valueOf(ratio[0]))
+                        .divide(BigDecimal.valueOf(ratio[1]), 0, mode).longValueExact();
+                assertThat(Money.ofMinor(amount).multiply(ratio[0], ratio[1], mode).minorUnits())
+                        .as("%d * %d / %d %s", amount, ratio[0], ratio[1], mode)
+                        .isEqualTo(expected);
+            }
+        }
+    }
+
+    @Test
+    void multiplyNeedingRoundingFailsWhenRoundingIsUnnecessary() {
+        assertThat(Money.ofMinor(10).multiply(1, 2, RoundingMode.UNNECESSARY)).isEqualTo(Money.ofMinor(5));
+        assertThatThrownBy(() -> Money.ofMinor(5).multiply(1, 2, RoundingMode.UNNECESSARY))
+                .isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    void multiplyOverflowThrows() {
+        assertThatThrownBy(() -> Money.ofMinor(Long.MAX_VALUE / 2 + 1).multiply(2, 1, RoundingMode.HALF_EVEN))
+                .isInstanceOf(ArithmeticException.class);
+        // the intermediate product overflows even though the result would fit
+        assertThatThrownBy(() -> Money.ofMinor(Long.MAX_VALUE).multiply(3, 3, RoundingMode.HALF_EVEN))
+                .isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    void plusMinusAndNegateOverflowThrow() {
+        assertThatThrownBy(() -> Money.ofMinor(Long.MAX_VALUE).plus(Money.ofMinor(1)))
+                .isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> Money.ofMinor(Long.MIN_VALUE).minus(Money.ofMinor(1)))
+                .isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> Money.ofMinor(Long.MIN_VALUE).negate())
+                .isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    void negativeAmounts() {
+        Money debt = Money.of(new BigDecimal("-12.50"));
+
+        assertThat(debt.minorUnits()).isEqualTo(-1250);
+        assertThat(debt.isNegative()).isTrue();
+        assertThat(debt.negate()).isEqualTo(Money.ofMinor(1250));
+        assertThat(debt.plus(Money.ofMinor(1250)).isZero()).isTrue();
+        assertThat(debt.toBigDecimal()).isEqualByComparingTo("-12.50");
+        assertThat(debt.compareTo(Money.ZERO)).isNegative();
+        assertThat(debt.max(Money.ZERO)).isEqualTo(Money.ZERO);
+    }
+
+    @Test
+    void toStringPadsTheCents() {
+        assertThat(Money.ofMinor(0)).hasToString("0.00");
+        assertThat(Money.ofMinor(5)).hasToString("0.05");
+        assertThat(Money.ofMinor(-5)).hasToString("-0.05");
+        assertThat(Money.ofMinor(50)).hasToString("0.50");
+        assertThat(Money.ofMinor(1250)).hasToString("12.50");
+        assertThat(Money.ofMinor(-1250)).hasToString("-12.50");
+        assertThat(Money.ofMinor(Long.MIN_VALUE)).hasToString("-92233720368547758.08");
+    }
+
+    @Test
+    void ofRejectsFractionsOfACentUnlessRounded() {
+        assertThatThrownBy(() -> Money.of(new BigDecimal("1.005"))).isInstanceOf(ArithmeticException.class);
+        assertThat(Money.of(new BigDecimal("1.005"), RoundingMode.HALF_EVEN)).isEqualTo(Money.ofMinor(100));
+        assertThat(Money.of(new BigDecimal("-1.005"), RoundingMode.HALF_UP)).isEqualTo(Money.ofMinor(-101));
+    }
+}
@@ -0,0 +1,277 @@
+package com.birmanBank.BirmanBankBackend.repositories;
+
+import com.birmanBank.BirmanBankBackend.config.MongoConversionConfig;
+import com.birmanBank.BirmanBankBackend.config.MongoIndexBootstrapper;
+import com.birmanBank.BirmanBankBackend.services.AccountChangedEvent;
+import com.birmanBank.BirmanBankBackend.services.AdminListingService;
+import com.birmanBank.BirmanBankBackend.services.RequestIdentityMap;
+import com.birmanBank.BirmanBankBackend.services.TokenEpochService;
+import com.birmanBank.BirmanBankBackend.services.ClientServices.AccountDesignationService;
+
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Range;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * every query the repositories and the MongoTemplate based services send is captured from the driver
+ * and explained against a database with the indexes declared on the models, a COLLSCAN fails the test
+ * needs a MongoDB server, e.g. BANK_TEST_MONGODB_URI=mongodb://localhost:27017, a throwaway database is used
+ */
+@DataMongoTest
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({ MongoConversionConfig.class, MongoIndexBootstrapper.class, QueryPlanTest.CommandCapture.class,
+        AdminListingService.class, TokenEpochService.class, AccountDesignationService.class,
+        RequestIdentityMap.class })
+@EnabledIfEnvironmentVariable(named = "BANK_TEST_MONGODB_URI", matches = ".+")
+class QueryPlanTest {
+
+    private static final String ID = "0000000000000000001";
+    private static final String CARD = "1000000000000001";
+
+    @DynamicPropertySource
+    static void mongo(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", () -> System.getenv("BANK_TEST_MONGODB_URI"));
+        registry.add("spring.data.mongodb.database",
+                () -> "query_plan_test_" + UUID.randomUUID().toString().replace("-", ""));
+    }
+
+    // records the commands that can be explained, as the driver sends them
+    @TestConfiguration
+    static class CommandCapture {
+        private static final Set<String> EXPLAINABLE = Set.of("find", "aggregate", "count", "distinct", "update",
+                "delete", "findAndModify");
+
+        final List<BsonDocument> commands = new CopyOnWriteArrayList<>();
+
+        @Bean
+        MongoClientSettingsBuilderCustomizer captureCommands() {
+            return settings -> settings.addCommandListener(new CommandListener() {
+                @Override
+                public void commandStarted(CommandStartedEvent event) {
+                    if (EXPLAINABLE.contains(event.getCommandName())) {
+                        commands.add(event.getCommand().clone());
+                    }
+                }
+            });
+        }
+    }
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    @Autowired
+    private MongoMappingContext mappingContext;
+    @Autowired
+    private MongoIndexBootstrapper mongoIndexBootstrapper;
+    @Autowired
+    private CommandCapture capture;
+
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private ClientRepository clientRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private TransactionRepository transactionRepository;
+    @Autowired
+    private LoanRepository loanRepository;
+    @Autowired
+    private DailyBalanceRepository dailyBalanceRepository;
+    @Autowired
+    private InboxMessageRepository inboxMessageRepository;
+    @Autowired
+    private OutboxMessageRepository outboxMessageRepository;
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+    @Autowired
+    private AdminListingService adminListingService;
+    @Autowired
+    private TokenEpochService tokenEpochService;
+    @Autowired
+    private AccountDesignationService accountDesignationService;
+
+    // a collection that does not exist is explained as EOF, so every mapped collection is created first
+    @BeforeEach
+    void createCollectionsAndIndexes() {
+        mappingContext.getPersistentEntities().stream()
+                .filter(entity -> entity.isAnnotationPresent(
+                        org.springframework.data.mongodb.core.mapping.Document.class))
+                .map(MongoPersistentEntity::getCollection)
+                .distinct()
+                .filter(collection -> !mongoTemplate.collectionExists(collection))
+                .forEach(mongoTemplate::createCollection);
+        mongoIndexBootstrapper.ensureIndexes();
+    }
+
+    @AfterEach
+    void dropDatabase() {
+        mongoTemplate.getDb().drop();
+    }
+
+    @TestFactory
+    Stream<DynamicTest> queriesAreServedByAnIndex() {
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, Runnable> queries = Map.ofEntries(
+                Map.entry("AccountRepository.findByClientId", () -> accountRepository.findByClientId(ID)),
+                Map.entry("AccountRepository.countByClientId", () -> accountRepository.countByClientId(ID)),
+                Map.entry("AccountRepository.findByClientIdIn", () -> accountRepository.findByClientIdIn(List.of(ID))),
+                Map.entry("AccountRepository.creditBalance",
+                        () -> accountRepository.creditBalance(ID, BigDecimal.ONE)),
+                Map.entry("AccountRepository.debitBalance",
+                        () -> accountRepository.debitBalance(ID, BigDecimal.ONE)),
+                Map.entry("AccountRepository.creditBalances",
+                        () -> accountRepository.creditBalances(Map.of(ID, BigDecimal.ONE))),
+                Map.entry("ClientRepository.findByUserCardNumber", () -> clientRepository.findByUserCardNumber(CARD)),
+                Map.entry("ClientRepository.findSessionSummaryByUserCardNumber",
+                        () -> clientRepository.findSessionSummaryByUserCardNumber(CARD)),
+                Map.entry("ClientRepository.findByPhoneNumber", () -> clientRepository.findByPhoneNumber("4165550100")),
+                Map.entry("ClientRepository.findByPhoneNumberIn",
+                        () -> clientRepository.findByPhoneNumberIn(List.of("4165550100"))),
+                Map.entry("UserRepository.findByCardNumber", () -> userRepository.findByCardNumber(CARD)),
+                Map.entry("TransactionRepository.findByAccountId",
+                        () -> transactionRepository.findByAccountId(ID, PageRequest.of(0, 20))),
+                Map.entry("TransactionRepository.findByAccountIdAndTimestampBetween",
+                        () -> transactionRepository.findByAccountIdAndTimestampBetween(ID, now.minusDays(30), now,
+                                PageRequest.of(0, 20))),
+                Map.entry("TransactionRepository.findByAccountIdOrderByTimestampDescTransactionIdDesc",
+                        () -> transactionRepository.findByAccountIdOrderByTimestampDescTransactionIdDesc(ID,
+                                PageRequest.of(0, 20))),
+                Map.entry("TransactionRepository.findPageBefore",
+                        () -> transactionRepository.findPageBefore(ID, now, ID, PageRequest.of(0, 20))),
+                Map.entry("TransactionRepository.countByAccountId", () -> transactionRepository.countByAccountId(ID)),
+                Map.entry("TransactionRepository.findByTransactionIdAndTimestampBetween",
+                        () -> transactionRepository.findByTransactionIdAndTimestampBetween(ID, now.minusDays(1), now)),
+                Map.entry("TransactionRepository.existsByAccountIdAndTransactionIdAndTimestampBetween",
+                        () -> transactionRepository.existsByAccountIdAndTransactionIdAndTimestampBetween(ID, ID,
+                                now.minusDays(1), now)),
+                Map.entry("TransactionRepository.streamByAccountIdAndTimestampBetweenOrderByTimestampAsc", () -> {
+                    try (Stream<?> rows = transactionRepository
+                            .streamByAccountIdAndTimestampBetweenOrderByTimestampAsc(ID, now.minusDays(30), now)) {
+                        rows.count();
+                    }
+                }),
+                Map.entry("LoanRepository.findByUserCardNumber", () -> loanRepository.findByUserCardNumber(CARD)),
+                Map.entry("LoanRepository.findByStatus", () -> loanRepository.findByStatus("PENDING")),
+                Map.entry("DailyBalanceRepository.findByAccountIdAndDateBetweenOrderByDateAsc",
+                        () -> dailyBalanceRepository.findByAccountIdAndDateBetweenOrderByDateAsc(ID,
+                                Range.closed(LocalDate.now().minusDays(30), LocalDate.now()))),
+                Map.entry("DailyBalanceRepository.findFirstByAccountIdAndDateLessThanOrderByDateDesc",
+                        () -> dailyBalanceRepository.findFirstByAccountIdAndDateLessThanOrderByDateDesc(ID,
+                                LocalDate.now())),
+                Map.entry("DailyBalanceRepository.findFirstByAccountIdAndDateGreaterThanOrderByDateAsc",
+                        () -> dailyBalanceRepository.findFirstByAccountIdAndDateGreaterThanOrderByDateAsc(ID,
+                                LocalDate.now())),
+                Map.entry("DailyBalanceRepository.deleteByAccountId", () -> dailyBalanceRepository.deleteByAccountId(ID)),
+                Map.entry("InboxMessageRepository.findByRecipientId", () -> inboxMessageRepository.findByRecipientId(ID)),
+                Map.entry("OutboxMessageRepository.findByStatusAndNextAttemptAtLessThanEqualOrderByNextAttemptAtAsc",
+                        () -> outboxMessageRepository.findByStatusAndNextAttemptAtLessThanEqualOrderByNextAttemptAtAsc(
+                                "PENDING", now, PageRequest.of(0, 500))),
+                Map.entry("OutboxMessageRepository.findFirstByStatusOrderByCreatedAtAsc",
+                        () -> outboxMessageRepository.findFirstByStatusOrderByCreatedAtAsc("PENDING")),
+                Map.entry("OutboxMessageRepository.findByStatusAndCreatedAtLessThan",
+                        () -> outboxMessageRepository.findByStatusAndCreatedAtLessThan("HELD", now,
+                                PageRequest.of(0, 500))),
+                Map.entry("OutboxMessageRepository.countByStatus", () -> outboxMessageRepository.countByStatus("PENDING")),
+                Map.entry("RefreshTokenRepository.deleteByCardNumber",
+                        () -> refreshTokenRepository.deleteByCardNumber(CARD)),
+                Map.entry("AccountDesignationService.onAccountChanged",
+                        () -> accountDesignationService.onAccountChanged(new AccountChangedEvent(ID))),
+                // an unknown card is held as revoked, so the refresh also checks the revocations it holds
+                Map.entry("TokenEpochService.refresh", () -> {
+                    tokenEpochService.currentEpoch(CARD);
+                    tokenEpochService.refresh();
+                }),
+                Map.entry("AdminListingService.list (users by role)", () -> adminListingService.list(
+                        AdminListingService.Listing.USERS, new AdminListingService.Filter().with("role", "ADMIN"),
+                        null, null, 20)),
+                Map.entry("AdminListingService.list (clients by activation)", () -> adminListingService.list(
+                        AdminListingService.Listing.CLIENTS, new AdminListingService.Filter().with("activated", true),
+                        null, null, 20)),
+                Map.entry("AdminListingService.list (accounts by status)", () -> adminListingService.list(
+                        AdminListingService.Listing.ACCOUNTS, new AdminListingService.Filter().with("status", "ACTIVE"),
+                        null, null, 20)),
+                Map.entry("AdminListingService.list (transactions)", () -> adminListingService.list(
+                        AdminListingService.Listing.TRANSACTIONS, new AdminListingService.Filter(), null, null, 20)));
+
+        return queries.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .map(query -> DynamicTest.dynamicTest(query.getKey(), () -> assertServedByIndex(query.getValue())));
+    }
+
+    private void assertServedByIndex(Runnable query) {
+        capture.commands.clear();
+        query.run();
+        List<BsonDocument> commands = List.copyOf(capture.commands);
+        assertThat(commands).as("no query was sent").isNotEmpty();
+        for (BsonDocument command : commands) {
+            assertThat(planStages(command)).as(command.toJson()).doesNotContain("COLLSCAN");
+        }
+    }
+
+    // explains a captured command without its session and routing fields
+    private Set<String> planStages(BsonDocument command) {
+        BsonDocument explainable = new BsonDocument();
+        command.forEach((key, value) -> {
+            if (!key.startsWith("$") && !key.equals("lsid") && !key.equals("txnNumber")) {
+                explainable.put(key, value);
+            }
+        });
+        Document explain = mongoTemplate.getDb()
+                .runCommand(new Document("explain", explainable).append("verbosity", "queryPlanner"));
+        Set<String> stages = new LinkedHashSet<>();
+        collectStages(explain, stages);
+        return stages;
+    }
+
+    // walks the plan tree (inputStage, inputStages, queryPlan, $cursor...) and collects every stage name
+    // rejected plans are skipped, only the plan that would run matters
+    private void collectStages(Object node, Set<String> stages) {
+        if (node instanceof Map<?, ?> map) {
+            Object stage = map.get("stage");
+            if (stage instanceof String name) {
+                stages.add(name);
+            }
+            map.forEach((key, value) -> {
+                if (!"rejectedPlans".equals(key)) {
+                    collectStages(value, stages);
+                }
+            });
+        } else if (node instanceof List<?> list) {
+            list.forEach(value -> collectStages(value, stages));
+        }
+    }
+}
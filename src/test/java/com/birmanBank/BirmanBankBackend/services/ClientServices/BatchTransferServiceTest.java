@@ -0,0 +1,225 @@
+package com.birmanBank.BirmanBankBackend.services.ClientServices;
+
+import com.birmanBank.BirmanBankBackend.dto.BatchTransferRequest.TransferItem;
+import com.birmanBank.BirmanBankBackend.dto.BatchTransferResult;
+import com.birmanBank.BirmanBankBackend.models.Account;
+import com.birmanBank.BirmanBankBackend.models.Client;
+import com.birmanBank.BirmanBankBackend.models.OutboxMessage;
+import com.birmanBank.BirmanBankBackend.models.User;
+import com.birmanBank.BirmanBankBackend.repositories.AccountRepository;
+import com.birmanBank.BirmanBankBackend.repositories.ClientRepository;
+import com.birmanBank.BirmanBankBackend.repositories.TransactionRepository;
+import com.birmanBank.BirmanBankBackend.repositories.UserRepository;
+import com.birmanBank.BirmanBankBackend.services.MessageService;
+import com.birmanBank.BirmanBankBackend.services.RequestIdentityMap;
+import com.birmanBank.BirmanBankBackend.utils.IdGenerator;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/*
+ * the balance updates run against an in-memory map of balances,
+ * so every test can check what the batch left behind when part of it fails
+ */
+class BatchTransferServiceTest {
+
+    private static final String SENDER_CLIENT = "1000000000000001";
+    private static final String RECIPIENT_CLIENT = "1000000000000002";
+    private static final String SENDER_ACCOUNT = "sender-account";
+    private static final String RECIPIENT_ACCOUNT = "recipient-account";
+    private static final String RECIPIENT_PHONE = "4165550100";
+
+    private final Map<String, BigDecimal> balances = new HashMap<>();
+
+    private AccountRepository accountRepository;
+    private TransactionRepository transactionRepository;
+    private MessageService messageService;
+    private BatchTransferService batchTransferService;
+
+    @BeforeEach
+    void setUp() {
+        accountRepository = mock(AccountRepository.class);
+        ClientRepository clientRepository = mock(ClientRepository.class);
+        UserRepository userRepository = mock(UserRepository.class);
+        transactionRepository = mock(TransactionRepository.class);
+        AccountDesignationService accountDesignationService = mock(AccountDesignationService.class);
+
+        balances.put(SENDER_ACCOUNT, new BigDecimal("100.00"));
+        balances.put(RECIPIENT_ACCOUNT, new BigDecimal("5.00"));
+
+        Client recipient = Client.builder().clientId(RECIPIENT_CLIENT).phoneNumber(RECIPIENT_PHONE).build();
+        when(clientRepository.findByPhoneNumberIn(any())).thenReturn(List.of(recipient));
+        when(userRepository.findAllById(any()))
+                .thenReturn(List.of(User.builder().cardNumber(RECIPIENT_CLIENT).role("CLIENT").build()));
+        when(accountRepository.findByClientIdIn(any())).thenReturn(List.of(account(RECIPIENT_ACCOUNT, RECIPIENT_CLIENT)));
+        when(accountDesignationService.designationOf(any(), any()))
+                .thenReturn(new AccountDesignationService.Designation(RECIPIENT_ACCOUNT, RECIPIENT_ACCOUNT));
+        when(accountRepository.findAllById(any())).thenAnswer(invocation -> List.of(
+                account(SENDER_ACCOUNT, SENDER_CLIENT), account(RECIPIENT_ACCOUNT, RECIPIENT_CLIENT)));
+
+        when(accountRepository.debitBalance(anyString(), any())).thenAnswer(invocation -> {
+            String accountId = invocation.getArgument(0);
+            BigDecimal amount = invocation.getArgument(1);
+            BigDecimal balance = balances.get(accountId);
+            if (balance == null || balance.compareTo(amount) < 0) {
+                return Optional.empty();
+            }
+            balances.put(accountId, balance.subtract(amount));
+            return Optional.of(account(accountId, null));
+        });
+        when(accountRepository.creditBalance(anyString(), any())).thenAnswer(invocation -> {
+            String accountId = invocation.getArgument(0);
+            if (!balances.containsKey(accountId)) {
+                return Optional.empty();
+            }
+            balances.merge(accountId, invocation.getArgument(1), BigDecimal::add);
+            return Optional.of(account(accountId, null));
+        });
+        when(accountRepository.creditBalances(anyMap())).thenAnswer(invocation -> {
+            Map<String, BigDecimal> amounts = invocation.getArgument(0);
+            int matched = 0;
+            for (Map.Entry<String, BigDecimal> credit : amounts.entrySet()) {
+                if (balances.containsKey(credit.getKey())) {
+                    balances.merge(credit.getKey(), credit.getValue(), BigDecimal::add);
+                    matched++;
+                }
+            }
+            return matched;
+        });
+
+        messageService = mock(MessageService.class);
+        when(messageService.holdMessages(anyList())).thenAnswer(invocation -> {
+            List<OutboxMessage> messages = invocation.getArgument(0);
+            for (int i = 0; i < messages.size(); i++) {
+                messages.get(i).setOutboxId("held-" + i);
+            }
+            return messages;
+        });
+
+        AccountBalanceService accountBalanceService = new AccountBalanceService(accountRepository,
+                new RequestIdentityMap(accountRepository, clientRepository, userRepository));
+        batchTransferService = new BatchTransferService(accountRepository, clientRepository, userRepository,
+                transactionRepository, accountBalanceService, new AccountSequencer(4), messageService,
+                mock(DailyBalanceService.class), accountDesignationService, new IdGenerator("1"), 100);
+    }
+
+    @Test
+    void failedCreditLeavesSenderBalanceUnchanged() {
+        when(accountRepository.creditBalances(anyMap()))
+                .thenThrow(new DataAccessResourceFailureException("bulk write failed"));
+
+        List<BatchTransferResult> results = batchTransferService.batchTransfer(SENDER_CLIENT,
+                List.of(transfer("30.00"), transfer("20.00")));
+
+        assertThat(balances.get(SENDER_ACCOUNT)).isEqualByComparingTo("100.00");
+        assertThat(results).allMatch(result -> "FAILED".equals(result.getStatus()));
+        verify(transactionRepository, never()).insert(anyIterable());
+    }
+
+    @Test
+    void missingRecipientLeavesBothBalancesUnchanged() {
+        balances.remove(RECIPIENT_ACCOUNT); // deleted after the batch read it
+
+        List<BatchTransferResult> results = batchTransferService.batchTransfer(SENDER_CLIENT,
+                List.of(transfer("30.00")));
+
+        assertThat(balances.get(SENDER_ACCOUNT)).isEqualByComparingTo("100.00");
+        assertThat(results).allMatch(result -> "FAILED".equals(result.getStatus()));
+        verify(transactionRepository, never()).insert(anyIterable());
+    }
+
+    @Test
+    void failedRecordInsertUndoesTheMoneyMovement() {
+        when(transactionRepository.insert(anyIterable()))
+                .thenThrow(new DataAccessResourceFailureException("insert failed"));
+
+        List<BatchTransferResult> results = batchTransferService.batchTransfer(SENDER_CLIENT,
+                List.of(transfer("30.00")));
+
+        assertThat(balances.get(SENDER_ACCOUNT)).isEqualByComparingTo("100.00");
+        assertThat(balances.get(RECIPIENT_ACCOUNT)).isEqualByComparingTo("5.00");
+        assertThat(results).allMatch(result -> "FAILED".equals(result.getStatus()));
+    }
+
+    @Test
+    void successfulBatchMovesTheMoney() {
+        List<BatchTransferResult> results = batchTransferService.batchTransfer(SENDER_CLIENT,
+                List.of(transfer("30.00"), transfer("20.00")));
+
+        assertThat(balances.get(SENDER_ACCOUNT)).isEqualByComparingTo("50.00");
+        assertThat(balances.get(RECIPIENT_ACCOUNT)).isEqualByComparingTo("55.00");
+        assertThat(results).allMatch(result -> "SUCCESS".equals(result.getStatus()));
+    }
+
+    @Test
+    void notificationsAreHeldBeforeTheMoneyMovesAndReleasedAfter() {
+        batchTransferService.batchTransfer(SENDER_CLIENT, List.of(transfer("30.00"), transfer("20.00")));
+
+        InOrder order = inOrder(messageService, accountRepository);
+        order.verify(messageService).holdMessages(anyList());
+        order.verify(accountRepository).debitBalance(anyString(), any());
+        order.verify(messageService).releaseMessages(argThat(messages -> messages.size() == 2));
+        verify(messageService).discardMessages(argThat(List::isEmpty));
+    }
+
+    @Test
+    void failedBatchDiscardsItsNotifications() {
+        when(accountRepository.creditBalances(anyMap()))
+                .thenThrow(new DataAccessResourceFailureException("bulk write failed"));
+
+        batchTransferService.batchTransfer(SENDER_CLIENT, List.of(transfer("30.00")));
+
+        verify(messageService).releaseMessages(argThat(List::isEmpty));
+        verify(messageService).discardMessages(argThat(messages -> messages.size() == 1));
+    }
+
+    @Test
+    void failedReleaseDoesNotFailAnAppliedBatch() {
+        doThrow(new DataAccessResourceFailureException("outbox unavailable"))
+                .when(messageService).releaseMessages(anyList());
+
+        List<BatchTransferResult> results = batchTransferService.batchTransfer(SENDER_CLIENT,
+                List.of(transfer("30.00")));
+
+        assertThat(balances.get(SENDER_ACCOUNT)).isEqualByComparingTo("70.00");
+        assertThat(results).allMatch(result -> "SUCCESS".equals(result.getStatus()));
+    }
+
+    private Account account(String accountId, String clientId) {
+        return Account.builder()
+                .accountId(accountId)
+                .clientId(clientId)
+                .balance(balances.get(accountId))
+                .build();
+    }
+
+    private static TransferItem transfer(String amount) {
+        TransferItem item = new TransferItem();
+        item.setSenderAccountId(SENDER_ACCOUNT);
+        item.setRecipientPhoneNumber(RECIPIENT_PHONE);
+        item.setAmount(new BigDecimal(amount));
+        return item;
+    }
+}
@@ -0,0 +1,98 @@
+package com.birmanBank.BirmanBankBackend.services.ClientServices;
+
+import com.birmanBank.BirmanBankBackend.config.MongoConversionConfig;
+import com.birmanBank.BirmanBankBackend.config.MongoIdCallback;
+import com.birmanBank.BirmanBankBackend.models.Account;
+import com.birmanBank.BirmanBankBackend.models.OutboxMessage;
+import com.birmanBank.BirmanBankBackend.models.Transaction;
+import com.birmanBank.BirmanBankBackend.repositories.AccountRepository;
+import com.birmanBank.BirmanBankBackend.repositories.OutboxMessageRepository;
+import com.birmanBank.BirmanBankBackend.repositories.TransactionRepository;
+import com.birmanBank.BirmanBankBackend.services.MessageService;
+import com.birmanBank.BirmanBankBackend.services.RequestIdentityMap;
+import com.birmanBank.BirmanBankBackend.services.TransactionStorageService;
+import com.birmanBank.BirmanBankBackend.utils.IdGenerator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+/*
+ * runs a transfer against a real time-series transactions collection, which only accepts inserts
+ * needs a MongoDB server, e.g. BANK_TEST_MONGODB_URI=mongodb://localhost:27017, a throwaway database is used
+ */
+@DataMongoTest(properties = { "bank.transactions.storage=timeseries", "bank.id.node-id=1" })
+@Import({ MongoConversionConfig.class, MongoIdCallback.class, IdGenerator.class, TransactionStorageService.class,
+        TransactionService.class, AccountBalanceService.class, AccountSequencer.class, DailyBalanceService.class,
+        MessageService.class, RequestIdentityMap.class })
+@EnabledIfEnvironmentVariable(named = "BANK_TEST_MONGODB_URI", matches = ".+")
+class TimeSeriesTransferTest {
+
+    private static final String SENDER_CLIENT = "1000000000000001";
+    private static final String RECIPIENT_CLIENT = "1000000000000002";
+    private static final String RECIPIENT_PHONE = "4165550100";
+
+    @DynamicPropertySource
+    static void mongo(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", () -> System.getenv("BANK_TEST_MONGODB_URI"));
+        registry.add("spring.data.mongodb.database",
+                () -> "time_series_test_" + UUID.randomUUID().toString().replace("-", ""));
+    }
+
+    @MockitoBean
+    private RecipientDirectoryService recipientDirectoryService;
+
+    @Autowired
+    private TransactionService transactionService;
+    @Autowired
+    private TransactionStorageService transactionStorageService;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private TransactionRepository transactionRepository;
+    @Autowired
+    private OutboxMessageRepository outboxMessageRepository;
+
+    @Test
+    void transferIsRecordedInTheTimeSeriesCollection() {
+        assertThat(transactionStorageService.isTimeSeries()).isTrue();
+
+        Account sender = accountRepository.save(Account.builder().clientId(SENDER_CLIENT)
+                .accountType("Chequing").balance(new BigDecimal("100.00")).build());
+        Account recipient = accountRepository.save(Account.builder().clientId(RECIPIENT_CLIENT)
+                .accountType("Chequing").balance(new BigDecimal("5.00")).build());
+        when(recipientDirectoryService.resolve(RECIPIENT_PHONE)).thenReturn(
+                new RecipientDirectoryService.Recipient(RECIPIENT_CLIENT, "CLIENT", recipient.getAccountId()));
+
+        transactionService.transferMoney(SENDER_CLIENT, sender.getAccountId(), RECIPIENT_PHONE,
+                new BigDecimal("30.00"));
+
+        assertThat(accountRepository.findById(sender.getAccountId()).orElseThrow().getBalance())
+                .isEqualByComparingTo("70.00");
+        assertThat(accountRepository.findById(recipient.getAccountId()).orElseThrow().getBalance())
+                .isEqualByComparingTo("35.00");
+
+        // the released notification names the credit record, which is found through its time window
+        List<OutboxMessage> messages = outboxMessageRepository.findAll();
+        assertThat(messages).singleElement().satisfies(message -> {
+            assertThat(message.getStatus()).isEqualTo("PENDING");
+            Transaction credit = transactionService.getTransactionById(message.getAwaitedTransactionId())
+                    .orElseThrow();
+            assertThat(credit.getAccountId()).isEqualTo(recipient.getAccountId());
+            assertThat(credit.getTransactionType()).isEqualTo("CREDIT");
+        });
+        assertThat(transactionRepository.countByAccountId(sender.getAccountId())).isEqualTo(1);
+    }
+}
@@ -0,0 +1,151 @@
+package com.birmanBank.BirmanBankBackend.services.ClientServices;
+
+import com.birmanBank.BirmanBankBackend.models.Account;
+import com.birmanBank.BirmanBankBackend.models.OutboxMessage;
+import com.birmanBank.BirmanBankBackend.models.Transaction;
+import com.birmanBank.BirmanBankBackend.repositories.AccountRepository;
+import com.birmanBank.BirmanBankBackend.repositories.TransactionRepository;
+import com.birmanBank.BirmanBankBackend.services.MessageService;
+import com.birmanBank.BirmanBankBackend.services.RequestIdentityMap;
+import com.birmanBank.BirmanBankBackend.services.TransactionStorageService;
+import com.birmanBank.BirmanBankBackend.utils.IdGenerator;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/*
+ * the transaction repository behaves like a time-series collection: inserts are stored,
+ * a save of a record that already has an ID (a replace with upsert) is rejected the way MongoDB rejects it
+ */
+class TransactionServiceTest {
+
+    private static final String SENDER_CLIENT = "1000000000000001";
+    private static final String RECIPIENT_CLIENT = "1000000000000002";
+    private static final String SENDER_ACCOUNT = "sender-account";
+    private static final String RECIPIENT_ACCOUNT = "recipient-account";
+    private static final String RECIPIENT_PHONE = "4165550100";
+
+    private final Map<String, BigDecimal> balances = new HashMap<>();
+    private final List<Transaction> inserted = new ArrayList<>();
+
+    private MessageService messageService;
+    private TransactionService transactionService;
+
+    @BeforeEach
+    void setUp() {
+        AccountRepository accountRepository = mock(AccountRepository.class);
+        TransactionRepository transactionRepository = mock(TransactionRepository.class);
+        RequestIdentityMap requestIdentityMap = mock(RequestIdentityMap.class);
+        RecipientDirectoryService recipientDirectoryService = mock(RecipientDirectoryService.class);
+        TransactionStorageService transactionStorageService = mock(TransactionStorageService.class);
+        messageService = mock(MessageService.class);
+
+        balances.put(SENDER_ACCOUNT, new BigDecimal("100.00"));
+        balances.put(RECIPIENT_ACCOUNT, new BigDecimal("5.00"));
+
+        when(transactionStorageService.isTimeSeries()).thenReturn(true);
+        when(transactionRepository.insert(any(Transaction.class))).thenAnswer(invocation -> {
+            Transaction transaction = invocation.getArgument(0);
+            inserted.add(transaction);
+            return transaction;
+        });
+        when(transactionRepository.save(any(Transaction.class))).thenAnswer(invocation -> {
+            Transaction transaction = invocation.getArgument(0);
+            if (transaction.getTransactionId() != null) {
+                throw new InvalidDataAccessApiUsageException("Cannot perform an upsert on a time-series collection");
+            }
+            inserted.add(transaction);
+            return transaction;
+        });
+
+        when(requestIdentityMap.findAccount(SENDER_ACCOUNT)).thenReturn(Optional.of(account(SENDER_ACCOUNT,
+                SENDER_CLIENT)));
+        when(requestIdentityMap.remember(any(Account.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(recipientDirectoryService.resolve(RECIPIENT_PHONE)).thenReturn(
+                new RecipientDirectoryService.Recipient(RECIPIENT_CLIENT, "CLIENT", RECIPIENT_ACCOUNT));
+        when(messageService.holdMessage(anyString(), anyString(), anyString(), anyString(), anyString()))
+                .thenAnswer(invocation -> OutboxMessage.builder()
+                        .recipientId(invocation.getArgument(0))
+                        .awaitedAccountId(invocation.getArgument(3))
+                        .awaitedTransactionId(invocation.getArgument(4))
+                        .status("HELD")
+                        .build());
+
+        when(accountRepository.debitBalance(anyString(), any())).thenAnswer(invocation -> {
+            String accountId = invocation.getArgument(0);
+            BigDecimal amount = invocation.getArgument(1);
+            BigDecimal balance = balances.get(accountId);
+            if (balance == null || balance.compareTo(amount) < 0) {
+                return Optional.empty();
+            }
+            balances.put(accountId, balance.subtract(amount));
+            return Optional.of(account(accountId, null));
+        });
+        when(accountRepository.creditBalance(anyString(), any())).thenAnswer(invocation -> {
+            String accountId = invocation.getArgument(0);
+            if (!balances.containsKey(accountId)) {
+                return Optional.empty();
+            }
+            balances.merge(accountId, invocation.getArgument(1), BigDecimal::add);
+            return Optional.of(account(accountId, null));
+        });
+
+        transactionService = new TransactionService(transactionRepository, accountRepository, messageService,
+                new AccountBalanceService(accountRepository, requestIdentityMap), new AccountSequencer(4),
+                mock(DailyBalanceService.class), requestIdentityMap, recipientDirectoryService,
+                transactionStorageService, new IdGenerator("1"));
+    }
+
+    @Test
+    void transferInTimeSeriesModeInsertsBothRecords() {
+        transactionService.transferMoney(SENDER_CLIENT, SENDER_ACCOUNT, RECIPIENT_PHONE, new BigDecimal("30.00"));
+
+        assertThat(balances.get(SENDER_ACCOUNT)).isEqualByComparingTo("70.00");
+        assertThat(balances.get(RECIPIENT_ACCOUNT)).isEqualByComparingTo("35.00");
+        assertThat(inserted).extracting(Transaction::getTransactionType).containsExactly("DEBIT", "CREDIT");
+    }
+
+    @Test
+    void creditRecordKeepsTheIdTheNotificationWaitsOn() {
+        transactionService.transferMoney(SENDER_CLIENT, SENDER_ACCOUNT, RECIPIENT_PHONE, new BigDecimal("30.00"));
+
+        Transaction credit = inserted.get(1);
+        assertThat(credit.getTransactionId()).isNotNull();
+        verify(messageService).holdMessage(eq(RECIPIENT_CLIENT), anyString(), anyString(),
+                eq(RECIPIENT_ACCOUNT), eq(credit.getTransactionId()));
+        verify(messageService).releaseMessage(any(OutboxMessage.class));
+    }
+
+    @Test
+    void depositInTimeSeriesModeInsertsTheRecord() {
+        transactionService.depositMoney(SENDER_CLIENT, SENDER_ACCOUNT, new BigDecimal("12.50"));
+
+        assertThat(balances.get(SENDER_ACCOUNT)).isEqualByComparingTo("112.50");
+        assertThat(inserted).extracting(Transaction::getTransactionType).containsExactly("CREDIT");
+    }
+
+    private Account account(String accountId, String clientId) {
+        return Account.builder()
+                .accountId(accountId)
+                .clientId(clientId)
+                .accountType("Chequing")
+                .balance(balances.get(accountId))
+                .build();
+    }
+}
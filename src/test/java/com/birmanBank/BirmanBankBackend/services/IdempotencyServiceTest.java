@@ -0,0 +1,139 @@
+package com.birmanBank.BirmanBankBackend.services;
+
+import com.birmanBank.BirmanBankBackend.models.IdempotencyRecord;
+import com.birmanBank.BirmanBankBackend.repositories.IdempotencyRecordRepository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/*
+ * a key may only be given back when the operation was rejected before it changed anything,
+ * every other outcome is stored so a retry can never move the money a second time
+ */
+class IdempotencyServiceTest {
+
+    private static final String KEY = "key-1";
+    private static final String CARD = "1000000000000001";
+    private static final Map<String, Object> REQUEST = Map.of("amount", "10.00");
+
+    private IdempotencyRecordRepository repository;
+    private MongoTemplate mongoTemplate;
+    private IdempotencyService idempotencyService;
+    private final AtomicInteger runs = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(IdempotencyRecordRepository.class);
+        mongoTemplate = mock(MongoTemplate.class);
+        when(repository.insert(any(IdempotencyRecord.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        idempotencyService = new IdempotencyService(repository, mongoTemplate, new ObjectMapper(),
+                Duration.ofHours(24), Duration.ofSeconds(30), 100);
+    }
+
+    @Test
+    void rejectedRequestReleasesTheKey() {
+        assertThatThrownBy(() -> idempotencyService.execute(KEY, CARD, "transfer", REQUEST, () -> {
+            runs.incrementAndGet();
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Insufficient balance in account");
+        })).isInstanceOf(ResponseStatusException.class);
+
+        verify(mongoTemplate).remove(any(Query.class), eq(IdempotencyRecord.class));
+        verify(mongoTemplate, never()).updateFirst(any(Query.class), any(Update.class), eq(IdempotencyRecord.class));
+    }
+
+    @Test
+    void failureAfterTheOperationStartedIsStored() {
+        ResponseEntity<?> response = idempotencyService.execute(KEY, CARD, "transfer", REQUEST, () -> {
+            runs.incrementAndGet();
+            throw new DataAccessResourceFailureException("transaction record could not be written");
+        });
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR);
+        verify(mongoTemplate).updateFirst(any(Query.class), any(Update.class), eq(IdempotencyRecord.class));
+        verify(mongoTemplate, never()).remove(any(Query.class), eq(IdempotencyRecord.class));
+
+        // the retry replays the stored failure instead of running the operation again
+        ResponseEntity<?> retry = idempotencyService.execute(KEY, CARD, "transfer", REQUEST, () -> {
+            runs.incrementAndGet();
+            return ResponseEntity.ok(Map.of("message", "Transfer successful"));
+        });
+        assertThat(retry.getStatusCode()).isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR);
+        assertThat(runs.get()).isEqualTo(1);
+    }
+
+    @Test
+    void serverErrorResponseIsStored() {
+        idempotencyService.execute(KEY, CARD, "deposit", REQUEST, () -> ResponseEntity
+                .status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("error", "An unexpected error occurred")));
+
+        verify(mongoTemplate).updateFirst(any(Query.class), any(Update.class), eq(IdempotencyRecord.class));
+        verify(mongoTemplate, never()).remove(any(Query.class), eq(IdempotencyRecord.class));
+    }
+
+    @Test
+    void staleClaimIsNeverRunAgain() {
+        claimedBy(LocalDateTime.now().minusMinutes(5));
+
+        assertThatThrownBy(() -> idempotencyService.execute(KEY, CARD, "transfer", REQUEST, () -> {
+            runs.incrementAndGet();
+            return ResponseEntity.ok().build();
+        })).isInstanceOfSatisfying(ResponseStatusException.class, e -> {
+            assertThat(e.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+            assertThat(e.getReason()).contains("unknown");
+        });
+        assertThat(runs.get()).isZero();
+    }
+
+    @Test
+    void runningClaimIsReportedInProgress() {
+        claimedBy(LocalDateTime.now());
+
+        assertThatThrownBy(() -> idempotencyService.execute(KEY, CARD, "transfer", REQUEST, () -> {
+            runs.incrementAndGet();
+            return ResponseEntity.ok().build();
+        })).isInstanceOfSatisfying(ResponseStatusException.class, e -> {
+            assertThat(e.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+            assertThat(e.getReason()).contains("still being processed");
+        });
+        assertThat(runs.get()).isZero();
+    }
+
+    // another request holds the key, claimed at the given time with the same body
+    private void claimedBy(LocalDateTime claimedAt) {
+        when(repository.insert(any(IdempotencyRecord.class))).thenThrow(new DuplicateKeyException("duplicate"));
+        when(repository.findById(anyString())).thenAnswer(invocation -> {
+            IdempotencyRecord first = IdempotencyRecord.builder()
+                    .requestHash(invocation.getArgument(0))
+                    .status("IN_PROGRESS")
+                    .claimedAt(claimedAt)
+                    .createdAt(claimedAt)
+                    .build();
+            return Optional.of(first);
+        });
+    }
+}
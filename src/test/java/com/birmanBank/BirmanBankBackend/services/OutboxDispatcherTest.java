@@ -0,0 +1,89 @@
+package com.birmanBank.BirmanBankBackend.services;
+
+import com.birmanBank.BirmanBankBackend.models.OutboxMessage;
+import com.birmanBank.BirmanBankBackend.repositories.OutboxMessageRepository;
+import com.birmanBank.BirmanBankBackend.repositories.TransactionRepository;
+import com.birmanBank.BirmanBankBackend.utils.IdGenerator;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/*
+ * settling held messages whose request crashed, the awaited record is looked up the way a time-series
+ * collection can answer without scanning: by account and the time window of the generated ID
+ */
+class OutboxDispatcherTest {
+
+    private static final String ACCOUNT = "recipient-account";
+
+    private OutboxMessageRepository outboxMessageRepository;
+    private TransactionRepository transactionRepository;
+    private OutboxDispatcher outboxDispatcher;
+
+    @BeforeEach
+    void setUp() {
+        outboxMessageRepository = mock(OutboxMessageRepository.class);
+        transactionRepository = mock(TransactionRepository.class);
+        outboxDispatcher = new OutboxDispatcher(outboxMessageRepository, transactionRepository,
+                mock(MongoTemplate.class), 500, 10, Duration.ofMinutes(5));
+    }
+
+    @Test
+    void heldMessageIsReleasedWhenItsRecordExistsInTheIdTimeWindow() {
+        String transactionId = new IdGenerator("1").nextIdString();
+        OutboxMessage message = held(ACCOUNT, transactionId);
+        when(transactionRepository.existsByAccountIdAndTransactionIdAndTimestampBetween(eq(ACCOUNT),
+                eq(transactionId), any(), any())).thenReturn(true);
+
+        outboxDispatcher.settleHeld();
+
+        assertThat(message.getStatus()).isEqualTo("PENDING");
+        verify(outboxMessageRepository).save(message);
+        verify(transactionRepository, never()).existsById(anyString());
+    }
+
+    @Test
+    void heldMessageIsDroppedWhenItsRecordNeverAppeared() {
+        OutboxMessage message = held(ACCOUNT, new IdGenerator("1").nextIdString());
+
+        outboxDispatcher.settleHeld();
+
+        verify(outboxMessageRepository).deleteById(message.getOutboxId());
+        verify(transactionRepository, never()).existsById(anyString());
+    }
+
+    @Test
+    void messageHeldWithoutAnAccountFallsBackToTheIdLookup() {
+        String transactionId = new IdGenerator("1").nextIdString();
+        OutboxMessage message = held(null, transactionId);
+        when(transactionRepository.existsById(transactionId)).thenReturn(true);
+
+        outboxDispatcher.settleHeld();
+
+        assertThat(message.getStatus()).isEqualTo("PENDING");
+        verify(outboxMessageRepository).save(message);
+    }
+
+    private OutboxMessage held(String accountId, String transactionId) {
+        OutboxMessage message = MessageService.heldMessage("1000000000000002", "Money Received", "body",
+                accountId, transactionId);
+        message.setOutboxId("outbox-1");
+        when(outboxMessageRepository.findByStatusAndCreatedAtLessThan(eq("HELD"), any(LocalDateTime.class), any()))
+                .thenReturn(List.of(message));
+        return message;
+    }
+}
@@ -0,0 +1,117 @@
+package com.birmanBank.BirmanBankBackend.services;
+
+import com.birmanBank.BirmanBankBackend.config.MongoConversionConfig;
+import com.birmanBank.BirmanBankBackend.models.Transaction;
+import com.birmanBank.BirmanBankBackend.utils.LatencyHistogram;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.timeseries.Granularity;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * compares the two layouts of the transactions collection on the same data: storage size and the latency
+ * of the account history query (findByAccountIdAndTimestampBetween, first page of 50)
+ * a benchmark, not a check - it needs a MongoDB server, e.g. BANK_TEST_MONGODB_URI=mongodb://localhost:27017,
+ * loads a throwaway database and logs the figures of both layouts
+ * BANK_BENCHMARK_RUNS sets the number of timed queries per layout (default 200)
+ */
+@DataMongoTest
+@Import(MongoConversionConfig.class)
+@EnabledIfEnvironmentVariable(named = "BANK_TEST_MONGODB_URI", matches = ".+")
+class TransactionStorageBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionStorageBenchmarkTest.class);
+
+    private static final String STANDARD = "transactions_standard";
+    private static final String TIME_SERIES = "transactions_timeseries";
+    private static final int ACCOUNTS = 100;
+    private static final int TRANSACTIONS_PER_ACCOUNT = 500;
+
+    @DynamicPropertySource
+    static void mongo(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", () -> System.getenv("BANK_TEST_MONGODB_URI"));
+        registry.add("spring.data.mongodb.database",
+                () -> "storage_benchmark_" + UUID.randomUUID().toString().replace("-", ""));
+    }
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Test
+    void compareLayouts() {
+        int runs = Optional.ofNullable(System.getenv("BANK_BENCHMARK_RUNS")).map(Integer::parseInt).orElse(200);
+
+        // the standard layout with the history index declared on Transaction, the time-series one as created
+        // by TransactionStorageService
+        mongoTemplate.createCollection(STANDARD);
+        mongoTemplate.indexOps(STANDARD).ensureIndex(new Index().on("accountId", Sort.Direction.ASC)
+                .on("timestamp", Sort.Direction.DESC).on("_id", Sort.Direction.DESC));
+        mongoTemplate.createCollection(TIME_SERIES, CollectionOptions.timeSeries("timestamp",
+                options -> options.metaField("accountId").granularity(Granularity.HOURS)));
+
+        LocalDateTime start = LocalDateTime.now().minusDays(90);
+        for (int account = 0; account < ACCOUNTS; account++) {
+            List<Transaction> transactions = new ArrayList<>(TRANSACTIONS_PER_ACCOUNT);
+            for (int i = 0; i < TRANSACTIONS_PER_ACCOUNT; i++) {
+                transactions.add(Transaction.builder()
+                        .accountId("account-" + account)
+                        .transactionType(i % 2 == 0 ? "CREDIT" : "DEBIT")
+                        .transactionAmount(new BigDecimal("12.50"))
+                        .postTransactionBalance(BigDecimal.valueOf(1000 + i))
+                        .timestamp(start.plusMinutes(i * 259L)) // spread over the 90 days
+                        .build());
+            }
+            mongoTemplate.insert(transactions, STANDARD);
+            transactions.forEach(transaction -> transaction.setTransactionId(null));
+            mongoTemplate.insert(transactions, TIME_SERIES);
+        }
+
+        LocalDateTime to = LocalDateTime.now();
+        LocalDateTime from = to.minusDays(30);
+        for (String collection : List.of(STANDARD, TIME_SERIES)) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            int found = 0;
+            for (int i = 0; i < runs; i++) {
+                Query history = Query.query(Criteria.where("accountId").is("account-" + (i % ACCOUNTS))
+                        .and("timestamp").gte(from).lte(to))
+                        .with(Sort.by(Sort.Direction.DESC, "timestamp"))
+                        .limit(50);
+                long started = System.nanoTime();
+                found = mongoTemplate.find(history, Transaction.class, collection).size();
+                histogram.record(System.nanoTime() - started);
+            }
+            assertThat(found).isEqualTo(50);
+
+            Document storage = mongoTemplate.getCollection(collection)
+                    .aggregate(List.of(new Document("$collStats", new Document("storageStats", new Document()))))
+                    .first()
+                    .get("storageStats", Document.class);
+            log.info("{}: storageSize={} totalIndexSize={} count={} history query {}", collection,
+                    storage.get("storageSize"), storage.get("totalIndexSize"), storage.get("count"),
+                    histogram.snapshot());
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.birmanBank.BirmanBankBackend.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * the index has to follow every way an entry leaves the cache,
+ * otherwise removeAll would miss entries or drop ones filed under a stale value
+ */
+class IndexedLruCacheTest {
+
+    @Test
+    void removeAllDropsOnlyTheEntriesUnderTheValue() {
+        IndexedLruCache<String, String> cache = new IndexedLruCache<>(10, Duration.ZERO);
+        IndexedLruCache.Index<String, String> byOwner = cache.addIndex(owner -> owner);
+        cache.put("a1", "alice");
+        cache.put("a2", "alice");
+        cache.put("b1", "bob");
+
+        cache.removeAll(byOwner, "alice");
+
+        assertThat(cache.get("a1")).isNull();
+        assertThat(cache.get("a2")).isNull();
+        assertThat(cache.get("b1")).isEqualTo("bob");
+    }
+
+    @Test
+    void replacedValueIsFiledUnderTheNewValue() {
+        IndexedLruCache<String, String> cache = new IndexedLruCache<>(10, Duration.ZERO);
+        IndexedLruCache.Index<String, String> byOwner = cache.addIndex(owner -> owner);
+        cache.put("a1", "alice");
+        cache.put("a1", "bob");
+
+        cache.removeAll(byOwner, "alice");
+        assertThat(cache.get("a1")).isEqualTo("bob");
+
+        cache.removeAll(byOwner, "bob");
+        assertThat(cache.get("a1")).isNull();
+    }
+
+    @Test
+    void evictedEntryLeavesTheIndex() {
+        IndexedLruCache<String, String> cache = new IndexedLruCache<>(1, Duration.ZERO);
+        IndexedLruCache.Index<String, String> byOwner = cache.addIndex(owner -> owner);
+        cache.put("a1", "alice");
+        cache.put("b1", "bob"); // evicts a1
+        cache.put("a1", "carol");
+
+        long evictions = cache.getStats().evictions();
+        cache.removeAll(byOwner, "alice");
+
+        assertThat(cache.getStats().evictions()).isEqualTo(evictions);
+        assertThat(cache.get("a1")).isEqualTo("carol");
+    }
+}